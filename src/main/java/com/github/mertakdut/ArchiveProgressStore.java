@@ -0,0 +1,165 @@
+package com.github.mertakdut;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Legacy store, saves the progress into the epub file itself. Every save rewrites the whole epub file; prefer the other stores for large books.
+ */
+public class ArchiveProgressStore implements ProgressStore {
+
+	@Override
+	public boolean contains(String bookFilePath) throws ReadingException {
+
+		ZipFile epubFile = openZipFile(bookFilePath);
+
+		try {
+			return epubFile.getEntry(Constants.SAVE_FILE_NAME) != null;
+		} finally {
+			closeZipFile(epubFile);
+		}
+	}
+
+	@Override
+	public byte[] load(String bookFilePath) throws ReadingException {
+
+		ZipFile epubFile = openZipFile(bookFilePath);
+
+		try {
+			return load(epubFile);
+		} finally {
+			closeZipFile(epubFile);
+		}
+	}
+
+	// Reads the progress through an already opened epub file.
+	static byte[] load(ZipFile epubFile) throws ReadingException {
+
+		ZipEntry zipEntry = epubFile.getEntry(Constants.SAVE_FILE_NAME);
+
+		if (zipEntry == null) {
+			return null;
+		}
+
+		InputStream saveFileInputStream = null;
+
+		try {
+			saveFileInputStream = epubFile.getInputStream(zipEntry);
+			return ContextHelper.convertIsToByteArray(saveFileInputStream);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error reading progress from ZipFile: " + e.getMessage());
+		} finally {
+			if (saveFileInputStream != null) {
+				try {
+					saveFileInputStream.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void save(String bookFilePath, byte[] progress) throws ReadingException {
+
+		ZipFile epubFile = openZipFile(bookFilePath);
+		ZipOutputStream zipOutputStream = null;
+
+		String fileName = new File(bookFilePath).getName();
+		String newFilePath = bookFilePath.replace(fileName, "tmp_" + fileName);
+
+		try {
+			zipOutputStream = new ZipOutputStream(new FileOutputStream(newFilePath));
+
+			Enumeration<? extends ZipEntry> entries = epubFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+
+				if (entry.getName().equals(Constants.SAVE_FILE_NAME)) // Don't copy the progress file. We'll put the new one already.
+					continue;
+
+				ZipEntry destEntry = new ZipEntry(entry.getName());
+				zipOutputStream.putNextEntry(destEntry);
+				if (!entry.isDirectory()) {
+					InputStream inputStream = epubFile.getInputStream(entry);
+
+					try {
+						ContextHelper.copy(inputStream, zipOutputStream);
+					} finally {
+						inputStream.close();
+					}
+				}
+				zipOutputStream.closeEntry();
+			}
+
+			ZipEntry progressFileEntry = new ZipEntry(Constants.SAVE_FILE_NAME);
+			zipOutputStream.putNextEntry(progressFileEntry);
+			zipOutputStream.write(progress);
+			zipOutputStream.closeEntry();
+
+			zipOutputStream.close();
+			zipOutputStream = null;
+
+		} catch (IOException e) {
+			e.printStackTrace();
+
+			if (zipOutputStream != null) {
+				try {
+					zipOutputStream.close();
+				} catch (IOException closeException) {
+					closeException.printStackTrace();
+				}
+			}
+
+			File newFile = new File(newFilePath);
+
+			if (newFile.exists()) {
+				newFile.delete();
+			}
+
+			throw new ReadingException("Error writing progressed ZipFile: " + e.getMessage());
+		} finally {
+			closeZipFile(epubFile);
+		}
+
+		File oldFile = new File(bookFilePath);
+
+		if (oldFile.exists()) {
+			oldFile.delete();
+		}
+
+		File newFile = new File(newFilePath);
+
+		if (newFile.exists() && !oldFile.exists()) {
+			newFile.renameTo(new File(bookFilePath));
+		}
+	}
+
+	private ZipFile openZipFile(String bookFilePath) throws ReadingException {
+		try {
+			return new ZipFile(bookFilePath);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error initializing ZipFile: " + e.getMessage());
+		}
+	}
+
+	private void closeZipFile(ZipFile epubFile) throws ReadingException {
+		try {
+			epubFile.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error closing ZipFile: " + e.getMessage());
+		}
+	}
+
+}
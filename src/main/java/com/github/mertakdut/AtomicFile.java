@@ -0,0 +1,117 @@
+package com.github.mertakdut;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Writes files through a temporary file renamed over the old one, so an interrupted write never leaves a half written file. Each write has its own temporary file; writers of the same
+// file at once don't touch each other's. java.nio.file isn't used, it's missing on older Androids.
+class AtomicFile {
+
+	static boolean exists(File file) {
+		return find(file) != null;
+	}
+
+	// Returns null if the file doesn't exist.
+	static byte[] read(File file) throws IOException {
+
+		File fileToRead = find(file);
+
+		if (fileToRead == null) {
+			return null;
+		}
+
+		FileInputStream inputStream = new FileInputStream(fileToRead);
+
+		try {
+			return ContextHelper.convertIsToByteArray(inputStream);
+		} finally {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	static void write(File file, byte[] bytes) throws IOException {
+
+		File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+
+		FileOutputStream outputStream = null;
+
+		try {
+			outputStream = new FileOutputStream(tmpFile);
+			outputStream.write(bytes);
+			outputStream.getFD().sync();
+			outputStream.close();
+			outputStream = null;
+
+			replace(tmpFile, file);
+		} finally {
+			if (outputStream != null) {
+				try {
+					outputStream.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+
+			if (tmpFile.exists()) {
+				tmpFile.delete();
+			}
+		}
+	}
+
+	static void delete(File file) {
+		file.delete();
+		getOldFile(file).delete();
+	}
+
+	// Renames the new file over the old one; atomic where the platform replaces files on rename. Where renaming doesn't replace, e.g. on Windows, the old file is moved aside first
+	// and moved back if the new one can't take its place.
+	private static void replace(File newFile, File file) throws IOException {
+
+		File oldFile = getOldFile(file);
+
+		if (newFile.renameTo(file)) {
+			oldFile.delete(); // Left by an interrupted write, if any.
+			return;
+		}
+
+		if (!file.exists()) {
+			throw new IOException("Cannot rename " + newFile + " to " + file);
+		}
+
+		oldFile.delete();
+
+		if (!file.renameTo(oldFile)) {
+			throw new IOException("Cannot move aside " + file);
+		}
+
+		if (!newFile.renameTo(file)) {
+			oldFile.renameTo(file);
+			throw new IOException("Cannot rename " + newFile + " to " + file);
+		}
+
+		oldFile.delete();
+	}
+
+	// A write interrupted while replacing the file leaves the only complete copy moved aside. It's used until the next write replaces it.
+	private static File find(File file) {
+
+		if (file.isFile()) {
+			return file;
+		}
+
+		File oldFile = getOldFile(file);
+
+		return oldFile.isFile() ? oldFile : null;
+	}
+
+	private static File getOldFile(File file) {
+		return new File(file.getPath() + ".old");
+	}
+
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 
 import com.github.mertakdut.exception.ReadingException;
 
@@ -16,6 +17,14 @@ abstract class BaseFindings {
 
 	abstract boolean fillContent(Node node) throws ReadingException;
 
+	// Streaming counterparts of fillContent(Node). Called in document order while the file is parsed, so only the needed parts are kept in memory.
+	// Returning true means everything needed is found; rest of the file is skipped.
+	abstract boolean startElement(String nodeName, Attributes attributes) throws ReadingException;
+
+	abstract boolean endElement(String nodeName) throws ReadingException;
+
+	abstract void characters(char[] ch, int start, int length);
+
 	protected class XmlItem {
 		private String value;
 		private Map<String, String> attributes;
@@ -51,6 +60,29 @@ abstract class BaseFindings {
 		return xmlItemList;
 	}
 
+	// Null if there are no attributes, as nodeToXmlItem does.
+	protected Map<String, String> attributesToMap(Attributes attributes) {
+
+		if (attributes.getLength() == 0) {
+			return null;
+		}
+
+		Map<String, String> attributeMap = new HashMap<>();
+
+		for (int i = 0; i < attributes.getLength(); i++) {
+			attributeMap.put(attributes.getQName(i), attributes.getValue(i));
+		}
+
+		return attributeMap;
+	}
+
+	protected XmlItem createXmlItem(String value, Map<String, String> attributes) {
+		XmlItem xmlItem = new XmlItem();
+		xmlItem.setValue(value);
+		xmlItem.setAttributes(attributes);
+		return xmlItem;
+	}
+
 	protected XmlItem nodeToXmlItem(Node node) {
 		XmlItem xmlItem = new XmlItem();
 		xmlItem.setValue(node.getTextContent());
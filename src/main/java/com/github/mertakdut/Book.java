@@ -0,0 +1,254 @@
+package com.github.mertakdut;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * A parsed epub file to be read by many readers at once; see {@link Reader#setFullContent(Book)}. Parsed files, decoded entries and found tags are kept once here. Sections are
+ * calculated once for each set of options, shared by the readers reading with them; readers only keep their own reading state.
+ *
+ * Thread safe. Parsed parts are never changed after opening.
+ */
+public final class Book implements Closeable {
+
+	private final String filePath;
+
+	private final List<String> entryNames;
+	private final EntryIndex entryIndex;
+
+	private final Container container;
+	private final Package opfPackage;
+	private final Toc toc; // As parsed; copied into each layout.
+
+	private final EntryContentCache entryContentCache;
+	private final Map<String, TagTable> tagTables = new LinkedHashMap<>(16, 0.75f, true); // Tags of the decoded entries, by entry content cache key. Only read once put.
+	private final long maxTagTablesSize; // in bytes; least recently used ones are evicted beyond it, as with the entry contents.
+	private long tagTablesSize;
+
+	private final Map<String, Layout> layouts = new HashMap<>(); // Layouts being read, by their keys.
+
+	private ZipFile epubFile;
+	private String contentDigest;
+
+	private int epubFileUserCount; // Readers using the file. A closed book closes it once they're all closed.
+	private boolean isClosed;
+
+	private Book(Content content) throws ReadingException {
+		this.filePath = content.getZipFilePath();
+		this.entryNames = Collections.unmodifiableList(content.getEntryNames());
+		this.entryIndex = content.getEntryIndex();
+		this.container = content.getContainer();
+		this.opfPackage = content.getPackage();
+		this.toc = content.getToc();
+		this.entryContentCache = new EntryContentCache(content.getOptionals().maxEntryContentCacheSize);
+		this.maxTagTablesSize = content.getOptionals().maxEntryContentCacheSize;
+		this.epubFile = content.getEpubFile();
+	}
+
+	/**
+	 * Parses the files needed for reading the book.
+	 *
+	 * @param filePath
+	 * @return the book, open until it's closed.
+	 * @throws ReadingException
+	 */
+	public static Book open(String filePath) throws ReadingException {
+		return open(filePath, Optionals.DEFAULT.maxEntryContentCacheSize);
+	}
+
+	/**
+	 * Does the same job with open but also sets the memory limit, in bytes, for the decoded entry contents shared by the readers. 0 disables it.
+	 *
+	 * @param filePath
+	 * @param maxEntryContentCacheSize
+	 * @return the book, open until it's closed.
+	 * @throws ReadingException
+	 */
+	public static Book open(String filePath, long maxEntryContentCacheSize) throws ReadingException {
+
+		Reader reader = new Reader();
+		reader.setMaxEntryContentCacheSize(maxEntryContentCacheSize);
+		reader.setFullContent(filePath);
+
+		return new Book(reader.getContent());
+	}
+
+	public Package getInfoPackage() {
+		return opfPackage;
+	}
+
+	/**
+	 * Closes the epub file once no reader is using it; readers reading the book keep it open until they're closed. Readers of the book still work afterwards, the file is reopened
+	 * on demand.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		isClosed = true;
+		entryContentCache.clear();
+
+		synchronized (tagTables) {
+			tagTables.clear();
+			tagTablesSize = 0;
+		}
+
+		if (epubFileUserCount == 0) {
+			closeEpubFile();
+		}
+	}
+
+	String getFilePath() {
+		return filePath;
+	}
+
+	List<String> getEntryNames() {
+		return entryNames;
+	}
+
+	EntryIndex getEntryIndex() {
+		return entryIndex;
+	}
+
+	Container getContainer() {
+		return container;
+	}
+
+	Package getPackage() {
+		return opfPackage;
+	}
+
+	Toc getToc() {
+		return toc;
+	}
+
+	EntryContentCache getEntryContentCache() {
+		return entryContentCache;
+	}
+
+	TagTable findTagTable(String key) {
+		synchronized (tagTables) {
+			return tagTables.get(key);
+		}
+	}
+
+	// Returns the table already put by another reader, if any. Tables are put with their indexes built.
+	TagTable putTagTable(String key, TagTable tagTable) {
+		synchronized (tagTables) {
+			TagTable existingTagTable = tagTables.get(key);
+
+			if (existingTagTable != null) {
+				return existingTagTable;
+			}
+
+			long tagTableSize = tagTable.getSize();
+
+			if (tagTableSize > maxTagTablesSize) { // Would evict everything else and still not fit.
+				return tagTable;
+			}
+
+			tagTables.put(key, tagTable);
+			tagTablesSize += tagTableSize;
+
+			for (Iterator<TagTable> iterator = tagTables.values().iterator(); tagTablesSize > maxTagTablesSize && iterator.hasNext();) {
+				tagTablesSize -= iterator.next().getSize();
+				iterator.remove();
+			}
+
+			return tagTable;
+		}
+	}
+
+	// Layout of the sections with the reader's options; calculated by any reader using it. Released once by each reader acquiring it.
+	Layout acquireLayout(String key) {
+		synchronized (layouts) {
+			Layout layout = layouts.get(key);
+
+			if (layout == null) {
+				layout = new Layout(key, toc.copy());
+				layouts.put(key, layout);
+			}
+
+			layout.setReaderCount(layout.getReaderCount() + 1);
+
+			return layout;
+		}
+	}
+
+	// Layout is dropped with its last reader; next reader with the same options calculates it again, or loads it from the layout cache.
+	void releaseLayout(Layout layout) {
+		synchronized (layouts) {
+			layout.setReaderCount(layout.getReaderCount() - 1);
+
+			if (layout.getReaderCount() == 0 && layouts.get(layout.getKey()) == layout) {
+				layouts.remove(layout.getKey());
+			}
+		}
+	}
+
+	synchronized ZipFile getEpubFile() throws ReadingException {
+		if (epubFile == null) {
+			try {
+				epubFile = new ZipFile(filePath);
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new ReadingException("Error initializing ZipFile: " + e.getMessage());
+			}
+		}
+
+		return epubFile;
+	}
+
+	// Called once by each reader before it uses the file, so it isn't closed under the reader.
+	synchronized ZipFile openEpubFile() throws ReadingException {
+		ZipFile epubFile = getEpubFile();
+		epubFileUserCount++;
+
+		return epubFile;
+	}
+
+	// Reader is closed or reads another book.
+	synchronized void releaseEpubFile() {
+		if (--epubFileUserCount == 0 && isClosed) {
+			try {
+				closeEpubFile();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	synchronized String getContentDigest() throws ReadingException {
+		if (contentDigest == null) {
+			openEpubFile();
+
+			try {
+				contentDigest = LayoutCache.getContentDigest(getEpubFile());
+			} finally {
+				releaseEpubFile();
+			}
+		}
+
+		return contentDigest;
+	}
+
+	private void closeEpubFile() throws IOException {
+		if (epubFile != null) {
+			try {
+				epubFile.close();
+			} finally {
+				epubFile = null;
+			}
+		}
+	}
+
+}
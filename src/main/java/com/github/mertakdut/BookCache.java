@@ -0,0 +1,316 @@
+package com.github.mertakdut;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Keeps the recently used books open, so the readers of a book share one parsed {@link Book} instead of parsing the file for every reader.
+ *
+ * Thread safe. Lookups don't lock; a book is loaded by the first request for it while the concurrent requests for the same book wait for that load, and requests for other books
+ * aren't blocked. Least recently used books are evicted once there are more than the limits; a lookup records its use only if no load is evicting meanwhile, so the order is
+ * approximate under load. A book is loaded again if its file is modified; files are checked at most once per check interval.
+ */
+public class BookCache implements Closeable {
+
+	private static final long DEFAULT_MODIFICATION_CHECK_INTERVAL = 1000; // in milliseconds.
+
+	private final int maxBookCount;
+	private final long maxTotalFileSize;
+	private final long maxEntryContentCacheSize;
+
+	private final ConcurrentMap<String, CachedBook> books = new ConcurrentHashMap<>();
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final LinkedHashMap<String, CachedBook> loadedBooks = new LinkedHashMap<>(16, 0.75f, true); // Least recently used first. Guarded by the eviction lock.
+	private long totalFileSize; // Of the loaded books. Guarded by the eviction lock.
+
+	private volatile long modificationCheckInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MODIFICATION_CHECK_INTERVAL);
+
+	private static class CachedBook {
+		final String key;
+		final FutureTask<Book> loading;
+		final long lastModified;
+		final long fileSize;
+		volatile long lastChecked; // System.nanoTime of the last modification check.
+
+		CachedBook(String key, FutureTask<Book> loading, long lastModified, long fileSize) {
+			this.key = key;
+			this.loading = loading;
+			this.lastModified = lastModified;
+			this.fileSize = fileSize;
+			this.lastChecked = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @param maxBookCount
+	 *            books kept in the cache at most.
+	 */
+	public BookCache(int maxBookCount) {
+		this(maxBookCount, Long.MAX_VALUE, Optionals.DEFAULT.maxEntryContentCacheSize);
+	}
+
+	/**
+	 * @param maxBookCount
+	 *            books kept in the cache at most.
+	 * @param maxEntryContentCacheSize
+	 *            memory limit, in bytes, for the decoded entry contents of each book.
+	 */
+	public BookCache(int maxBookCount, long maxEntryContentCacheSize) {
+		this(maxBookCount, Long.MAX_VALUE, maxEntryContentCacheSize);
+	}
+
+	/**
+	 * Does the same job with the other constructors but also limits the total size of the kept books' files. Parsed parts of a book grow with its file, while its decoded entries
+	 * and tags are kept within maxEntryContentCacheSize; so the memory held is bounded by both limits. A book larger than maxTotalFileSize is still kept, alone.
+	 *
+	 * @param maxBookCount
+	 *            books kept in the cache at most.
+	 * @param maxTotalFileSize
+	 *            total size, in bytes, of the files of the kept books.
+	 * @param maxEntryContentCacheSize
+	 *            memory limit, in bytes, for the decoded entry contents of each book.
+	 */
+	public BookCache(int maxBookCount, long maxTotalFileSize, long maxEntryContentCacheSize) {
+		this.maxBookCount = maxBookCount;
+		this.maxTotalFileSize = maxTotalFileSize;
+		this.maxEntryContentCacheSize = maxEntryContentCacheSize;
+	}
+
+	/**
+	 * Sets how often a kept book's file is checked for modifications. Modified books are loaded again on the first request after the check. 0 checks on every request. Default is
+	 * one second.
+	 *
+	 * @param modificationCheckInterval
+	 *            in milliseconds.
+	 */
+	public void setModificationCheckInterval(long modificationCheckInterval) {
+		this.modificationCheckInterval = TimeUnit.MILLISECONDS.toNanos(modificationCheckInterval);
+	}
+
+	/**
+	 * Returns the open book, or opens it. Pass it to {@link Reader#setFullContent(Book)}.
+	 *
+	 * @param filePath
+	 * @return the book.
+	 * @throws ReadingException
+	 *             if the book can't be opened. Next request tries again.
+	 */
+	public Book getBook(final String filePath) throws ReadingException {
+
+		if (filePath == null) {
+			throw new ReadingException("Epub file path is null.");
+		}
+
+		File file = new File(filePath);
+
+		String key = file.getAbsolutePath();
+
+		while (true) {
+			CachedBook cachedBook = books.get(key);
+
+			if (cachedBook != null && !isModified(cachedBook, file)) {
+				recordUse(cachedBook);
+			} else {
+				CachedBook loadingBook = new CachedBook(key, new FutureTask<>(new Callable<Book>() {
+					@Override
+					public Book call() throws ReadingException {
+						return Book.open(filePath, maxEntryContentCacheSize);
+					}
+				}), file.lastModified(), file.length());
+
+				boolean isPut = cachedBook == null ? books.putIfAbsent(key, loadingBook) == null : books.replace(key, cachedBook, loadingBook);
+
+				if (!isPut) { // Another request got there first; wait for its load instead.
+					continue;
+				}
+
+				if (cachedBook != null) { // File is modified; the old book is replaced.
+					removeLoadedBook(cachedBook);
+					closeBook(cachedBook);
+				}
+
+				loadingBook.loading.run(); // On this thread, out of the map's locks.
+				cachedBook = loadingBook;
+
+				if (getLoadedBook(cachedBook) != null) {
+					addLoadedBook(cachedBook);
+				}
+			}
+
+			try {
+				return cachedBook.loading.get();
+			} catch (ExecutionException e) {
+				books.remove(key, cachedBook);
+
+				if (e.getCause() instanceof ReadingException) {
+					throw (ReadingException) e.getCause();
+				}
+
+				e.printStackTrace();
+				throw new ReadingException("Error opening " + filePath + ": " + e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ReadingException("Interrupted while opening " + filePath);
+			}
+		}
+	}
+
+	/**
+	 * Drops the book, so it's opened again on the next request. Its file is closed once the readers already reading it are closed.
+	 *
+	 * @param filePath
+	 */
+	public void invalidate(String filePath) {
+		CachedBook cachedBook = books.remove(new File(filePath).getAbsolutePath());
+
+		if (cachedBook != null) {
+			removeLoadedBook(cachedBook);
+			closeBook(cachedBook);
+		}
+	}
+
+	/**
+	 * Closes the cached books and empties the cache. Their readers still work, books reopen their files on demand.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		for (String key : books.keySet()) {
+			CachedBook cachedBook = books.remove(key);
+
+			if (cachedBook != null) {
+				removeLoadedBook(cachedBook);
+				closeBook(cachedBook);
+			}
+		}
+	}
+
+	// Stats the file only once the check interval has passed since the last check.
+	private boolean isModified(CachedBook cachedBook, File file) {
+
+		long now = System.nanoTime();
+
+		if (now - cachedBook.lastChecked < modificationCheckInterval) {
+			return false;
+		}
+
+		cachedBook.lastChecked = now;
+
+		return file.lastModified() != cachedBook.lastModified;
+	}
+
+	// Moves the book to the most recently used end. Skipped, instead of waiting, while a load is evicting.
+	private void recordUse(CachedBook cachedBook) {
+		if (evictionLock.tryLock()) {
+			try {
+				loadedBooks.get(cachedBook.key);
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	// Evicted books are closed so their files don't stay open; a book still being read is closed once its readers are closed.
+	private void addLoadedBook(CachedBook cachedBook) {
+
+		List<CachedBook> evictedBooks = new ArrayList<>();
+
+		evictionLock.lock();
+
+		try {
+			if (books.get(cachedBook.key) != cachedBook) { // Invalidated or replaced while loading; it wasn't closed then.
+				evictedBooks.add(cachedBook);
+			} else {
+				loadedBooks.put(cachedBook.key, cachedBook);
+				totalFileSize += cachedBook.fileSize;
+
+				evict(cachedBook, evictedBooks);
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+
+		for (CachedBook evictedBook : evictedBooks) { // Out of the lock; lookups record their uses meanwhile.
+			closeBook(evictedBook);
+		}
+	}
+
+	// Least recently used ones first, down to the limits; the newest one is kept even if it's over them alone.
+	private void evict(CachedBook newestBook, List<CachedBook> evictedBooks) {
+
+		for (Iterator<CachedBook> iterator = loadedBooks.values().iterator(); (loadedBooks.size() > maxBookCount || totalFileSize > maxTotalFileSize) && iterator.hasNext();) {
+			CachedBook leastRecentlyUsed = iterator.next();
+
+			if (leastRecentlyUsed == newestBook) {
+				break;
+			}
+
+			iterator.remove();
+			totalFileSize -= leastRecentlyUsed.fileSize;
+
+			if (books.remove(leastRecentlyUsed.key, leastRecentlyUsed)) {
+				evictedBooks.add(leastRecentlyUsed);
+			}
+		}
+	}
+
+	private void removeLoadedBook(CachedBook cachedBook) {
+
+		evictionLock.lock();
+
+		try {
+			if (loadedBooks.get(cachedBook.key) == cachedBook) {
+				loadedBooks.remove(cachedBook.key);
+				totalFileSize -= cachedBook.fileSize;
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	// Closes the removed book's file, if it's loaded. A book still being loaded is handed to its waiting requests as it is.
+	private void closeBook(CachedBook cachedBook) {
+
+		if (!cachedBook.loading.isDone()) {
+			return;
+		}
+
+		Book book = getLoadedBook(cachedBook);
+
+		if (book != null) {
+			try {
+				book.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private Book getLoadedBook(CachedBook cachedBook) {
+		try {
+			return cachedBook.loading.get();
+		} catch (ExecutionException e) { // Failed to load; nothing to close.
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+}
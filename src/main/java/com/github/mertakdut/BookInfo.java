@@ -0,0 +1,33 @@
+package com.github.mertakdut;
+
+/**
+ * Info of a book read by {@link EpubBatch}.
+ */
+public class BookInfo {
+
+	private final String filePath;
+	private final Package infoPackage;
+	private final byte[] coverImage;
+
+	BookInfo(String filePath, Package infoPackage, byte[] coverImage) {
+		this.filePath = filePath;
+		this.infoPackage = infoPackage;
+		this.coverImage = coverImage;
+	}
+
+	public String getFilePath() {
+		return filePath;
+	}
+
+	public Package getInfoPackage() {
+		return infoPackage;
+	}
+
+	/**
+	 * @return the cover image. null if the book has none, or the batch doesn't read covers.
+	 */
+	public byte[] getCoverImage() {
+		return coverImage;
+	}
+
+}
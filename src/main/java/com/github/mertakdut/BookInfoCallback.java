@@ -0,0 +1,19 @@
+package com.github.mertakdut;
+
+/**
+ * Notified for each book scanned by {@link EpubBatch#scan(java.io.File, BookInfoCallback)}. Called on the executor's threads, possibly by many of them at once.
+ */
+public interface BookInfoCallback {
+
+	void onBookInfo(BookInfo bookInfo);
+
+	/**
+	 * The book is skipped; the batch goes on with the others.
+	 * 
+	 * @param filePath
+	 * @param exception
+	 *            ReadingException, or whatever else the book failed with.
+	 */
+	void onReadingFailed(String filePath, Exception exception);
+
+}
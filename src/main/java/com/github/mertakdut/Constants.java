@@ -4,8 +4,10 @@ class Constants {
 
 	// Core files
 	static final String FILE_NAME_CONTAINER_XML = "container.xml";
+	static final String FILE_PATH_CONTAINER_XML = "META-INF/container.xml";
 	static final String EXTENSION_NCX = ".ncx";
 	static final String EXTENSION_OPF = ".opf";
+	static final String EXTENSION_EPUB = ".epub";
 
 	// Keywords
 	static final String TAG_BODY_START = "<body";
@@ -25,10 +27,9 @@ class Constants {
 
 	static final String EXTENSION_CSS = ".css";
 
-	static final String HTML_TAG_PATTERN = "<(\"[^\"]*\"|'[^']*'|[^'\">])*>";
-
 	static final String STRING_MARKER = "|";
 
 	static final String SAVE_FILE_NAME = "epubparser_progress.ser";
+	static final String LAYOUT_FILE_EXTENSION = "layout";
 
 }
@@ -1,6 +1,7 @@
 package com.github.mertakdut;
 
 import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
 
 import com.github.mertakdut.exception.ReadingException;
 
@@ -8,6 +9,8 @@ class Container extends BaseFindings {
 	
 	private XmlItem rootFile;
 
+	private StringBuilder rootFileValueBuilder;
+
 	public XmlItem getRootFile() {
 		return rootFile;
 	}
@@ -35,6 +38,34 @@ class Container extends BaseFindings {
 		return false;
 	}
 
+	@Override
+	boolean startElement(String nodeName, Attributes attributes) {
+		if (rootFileValueBuilder == null && nodeName.equals("rootfile")) {
+			this.rootFile = createXmlItem(null, attributesToMap(attributes));
+			rootFileValueBuilder = new StringBuilder();
+		}
+
+		return false;
+	}
+
+	@Override
+	boolean endElement(String nodeName) {
+		if (rootFileValueBuilder != null && nodeName.equals("rootfile")) {
+			this.rootFile.setValue(rootFileValueBuilder.toString());
+			rootFileValueBuilder = null;
+			return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	void characters(char[] ch, int start, int length) {
+		if (rootFileValueBuilder != null) {
+			rootFileValueBuilder.append(ch, start, length);
+		}
+	}
+
 	// debug
 	public void print() {
 		System.out.println("\n\nPrinting Container...\n");
@@ -1,17 +1,27 @@
 package com.github.mertakdut;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -31,26 +41,118 @@ import com.github.mertakdut.exception.ReadingException;
 class Content {
 
 	private String zipFilePath;
+	private ZipFile epubFile; // Opened once, shared by every read until the Reader is closed.
 
 	private Container container;
 	private Package opfPackage;
-	private Toc toc;
 
 	private List<String> entryNames;
+	private EntryIndex entryIndex;
 
-	private Map<String, List<Tag>> entryTagPositions;
 	private List<String> nonExistingHrefList;
 
-	private int peakPage;
+	private EntryContentCache entryContentCache;
 
-	private BookSection lastBookSectionInfo;
+	private Layout layout; // Shared by the readers of the book with the same options, unless it's replaced; e.g. by a saved progress.
+	private boolean isUsingBookLayout; // Book's layout is counted for this content until it's closed or the options change.
 
-	public Content() {
+	private int lastPageIndex;
+
+	private Optionals optionals; // Replaced, never changed, when an option is set.
+
+	private Book book; // Parsed parts, decoded entries and tags are shared with the other readers of the book, if set.
+	private boolean isUsingBookEpubFile; // Book's file is kept open for this content until it's closed.
+
+	private String contentDigest; // Digest of the entry names, sizes and crcs. Only set if the layout or thumbnail cache is used.
+
+	private OpenStreams openStreams; // Streams handed out on epubFile.
+
+	// An entry paginate reads on the pool.
+	private static class ReadAheadEntry {
+		String entryName;
+		Future<Pair<EntryContent, TagTable>> task;
+	}
+
+	// Streams handed out on an epub file and not closed yet. If the content is closed first, the file is closed with the last of them.
+	private static class OpenStreams {
+		private final ZipFile epubFile;
+		private int count;
+		private boolean isReleased;
+
+		OpenStreams(ZipFile epubFile) {
+			this.epubFile = epubFile;
+		}
+
+		synchronized void open() {
+			count++;
+		}
+
+		synchronized void close() throws IOException {
+			if (--count == 0 && isReleased) {
+				epubFile.close();
+			}
+		}
+
+		// Returns true if the file can be closed now.
+		synchronized boolean release() {
+			isReleased = true;
+			return count == 0;
+		}
+	}
+
+	// Lets go of the epub file once closed; either the shared book's file or the content's own.
+	private static class HandedOutInputStream extends FilterInputStream {
+		private final Book book;
+		private final OpenStreams openStreams;
+		private boolean isClosed;
+
+		HandedOutInputStream(InputStream inputStream, Book book, OpenStreams openStreams) {
+			super(inputStream);
+			this.book = book;
+			this.openStreams = openStreams;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (isClosed) {
+				return;
+			}
+
+			isClosed = true;
+
+			try {
+				super.close();
+			} finally {
+				if (book != null) {
+					book.releaseEpubFile();
+				} else {
+					openStreams.close();
+				}
+			}
+		}
+	}
+
+	// Reads the shared book. Sections are calculated in the book's layout for the options.
+	Content(Optionals optionals, Book book) {
+		this(optionals);
+
+		this.book = book;
+		this.zipFilePath = book.getFilePath();
+		this.entryNames = book.getEntryNames();
+		this.entryIndex = book.getEntryIndex();
+		this.container = book.getContainer();
+		this.opfPackage = book.getPackage();
+		this.layout = null; // Acquired on demand.
+	}
+
+	public Content(Optionals optionals) {
+		this.optionals = optionals;
 		entryNames = new ArrayList<>();
+		nonExistingHrefList = Collections.synchronizedList(new ArrayList<String>()); // Entries may be read in parallel by paginate.
 
 		container = new Container();
 		opfPackage = new Package();
-		toc = new Toc();
+		layout = new Layout(null, new Toc());
 	}
 
 	// Debug
@@ -64,36 +166,225 @@ class Content {
 		getContainer().print();
 		getPackage().print();
 		getToc().print();
+		getEntryContentCache().print();
 	}
 
+	// Readers sharing the layout calculate and render their sections one at a time.
 	BookSection maintainBookSections(int index) throws ReadingException, OutOfPagesException {
 
-		if (peakPage == index) { // Moving in order.
-			peakPage++;
-		} else {
-			while (peakPage < index) { // Trying to move forward. Calculate the ones before first.
-				getBookSection(peakPage++);
+		Layout layout = getLayout();
+
+		synchronized (layout) {
+			if (layout.getPeakPage() == index) { // Moving in order.
+				layout.setPeakPage(index + 1);
+			} else {
+				while (layout.getPeakPage() < index) { // Trying to move forward. Calculate the ones before first; only their layout, they aren't rendered.
+					int peakPage = layout.getPeakPage();
+					layout.setPeakPage(peakPage + 1);
+					getBookSection(peakPage, true);
+				}
+			}
+
+			return getBookSection(index, false);
+		}
+
+	}
+
+	// Calculates the sections from the peak page to the end of the book without rendering them. Returns the page count.
+	// Entries are read and their tags are found in the pool, a few entries ahead. Sections are still calculated in order on this thread, since trimming and anchors change the navPoints after them.
+	int paginate(ForkJoinPool pool) throws ReadingException {
+
+		// Shared by the read ahead tasks; opened here so they aren't opened concurrently.
+		getEpubFile();
+		getEntryIndex();
+
+		Layout layout = getLayout();
+
+		synchronized (layout) { // Other readers of the layout wait for the sections instead of calculating them as well.
+			return paginate(pool, layout);
+		}
+	}
+
+	private int paginate(ForkJoinPool pool, Layout layout) throws ReadingException {
+
+		List<NavPoint> navPoints = layout.getToc().getNavMap().getNavPoints();
+
+		if (navPoints == null) {
+			throw new ReadingException("Term of Contents is null.");
+		}
+
+		List<String> readAheadEntryNames = new ArrayList<>();
+		Set<String> foundEntryNames = new HashSet<>();
+
+		for (int i = layout.getPeakPage(); i < navPoints.size(); i++) {
+			String entryName = findEntryNameOf(navPoints.get(i));
+
+			if (entryName != null && foundEntryNames.add(entryName)) {
+				readAheadEntryNames.add(entryName);
+			}
+		}
+
+		Deque<ReadAheadEntry> readAheadEntries = new ArrayDeque<>();
+		int readAheadIndex = 0;
+		int readAheadLimit = pool.getParallelism() * 2;
+
+		try {
+			for (int index = layout.getPeakPage(); index < navPoints.size(); index++) {
+
+				while (readAheadEntries.size() < readAheadLimit && readAheadIndex < readAheadEntryNames.size()) {
+					readAheadEntries.add(submitReadAheadEntry(pool, readAheadEntryNames.get(readAheadIndex++)));
+				}
+
+				String entryName = findEntryNameOf(navPoints.get(index));
+
+				if (entryName != null && isReadingAhead(readAheadEntries, entryName)) {
+					ReadAheadEntry readAheadEntry;
+
+					// Entries before it are skipped, e.g. their navPoints are removed as broken anchors. They're read here if they're needed again.
+					while (!(readAheadEntry = readAheadEntries.poll()).entryName.equals(entryName)) {
+						readAheadEntry.task.cancel(true);
+					}
+
+					installReadAheadEntry(readAheadEntry);
+				}
+
+				layout.setPeakPage(index + 1);
+				getBookSection(index, true);
+			}
+		} catch (OutOfPagesException e) {
+			// Last navPoints are removed while calculating; there are no pages left.
+		} finally {
+			for (ReadAheadEntry readAheadEntry : readAheadEntries) {
+				readAheadEntry.task.cancel(true);
+			}
+		}
+
+		layout.setPeakPage(navPoints.size());
+
+		return navPoints.size();
+	}
+
+	// Entry of the navPoint without changing it; null if the navPoint doesn't refer to an existing entry.
+	private String findEntryNameOf(NavPoint navPoint) throws ReadingException {
+
+		if (navPoint.isCalculated() || navPoint.getTypeCode() == 2) {
+			return navPoint.getEntryName();
+		}
+
+		String fileName = getEntryIndex().findFileName(navPoint.getContentSrc());
+
+		return fileName != null ? getEntryIndex().findEntryName(fileName) : null;
+	}
+
+	private ReadAheadEntry submitReadAheadEntry(ForkJoinPool pool, final String entryName) {
+
+		final int maxContentPerSection = optionals.maxContentPerSection;
+
+		ReadAheadEntry readAheadEntry = new ReadAheadEntry();
+		readAheadEntry.entryName = entryName;
+		readAheadEntry.task = pool.submit(new Callable<Pair<EntryContent, TagTable>>() {
+			@Override
+			public Pair<EntryContent, TagTable> call() throws ReadingException {
+				EntryContent entryContent = decodeEntryContent(entryName);
+				TagTable tagTable = null;
+
+				if (maxContentPerSection != 0 && entryContent.getHtmlBody().length() > maxContentPerSection) { // Will be trimmed.
+					tagTable = new TagTable(entryContent.getHtmlBody());
+					tagTable.buildIndexes();
+				}
+
+				return new Pair<>(entryContent, tagTable);
+			}
+		});
+
+		return readAheadEntry;
+	}
+
+	private boolean isReadingAhead(Deque<ReadAheadEntry> readAheadEntries, String entryName) {
+		for (ReadAheadEntry readAheadEntry : readAheadEntries) {
+			if (readAheadEntry.entryName.equals(entryName)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// Waits for the entry and puts it where the calculation looks for it.
+	private void installReadAheadEntry(ReadAheadEntry readAheadEntry) throws ReadingException {
+
+		Pair<EntryContent, TagTable> result;
+
+		try {
+			result = readAheadEntry.task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ReadingException("Interrupted while paginating: " + e.getMessage());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ReadingException) {
+				throw (ReadingException) e.getCause();
 			}
+
+			e.printStackTrace();
+			throw new ReadingException("Error while reading " + readAheadEntry.entryName + ": " + e.getCause());
+		}
+
+		String key = getEntryKey(readAheadEntry.entryName);
+
+		if (getEntryContentCache().get(key) == null) {
+			getEntryContentCache().put(key, result.getFirst());
+		}
+
+		if (result.getSecond() != null && !getLayout().getEntryTagPositions().containsKey(readAheadEntry.entryName)) {
+			putEntryTagPositions(readAheadEntry.entryName, result.getSecond());
+		}
+	}
+
+	// Same with maintainBookSections, but the section isn't marked as the last read one.
+	BookSection prefetchBookSection(int index) throws ReadingException, OutOfPagesException {
+
+		int lastPageIndex = this.lastPageIndex;
+
+		try {
+			return maintainBookSections(index);
+		} finally {
+			this.lastPageIndex = lastPageIndex;
 		}
+	}
+
+	// null if there is no navPoint at the index.
+	NavPoint findNavPoint(int index) {
+
+		Layout layout = getLayout();
+
+		synchronized (layout) {
+			List<NavPoint> navPoints = layout.getToc() != null ? layout.getToc().getNavMap().getNavPoints() : null;
 
-		return getBookSection(index);
+			if (navPoints == null || index < 0 || index >= navPoints.size()) {
+				return null;
+			}
 
+			return navPoints.get(index);
+		}
 	}
 
-	// TODO: A new method for only calculating book sections. That will also be useful for pre-loading the whole book.
-	private BookSection getBookSection(int index) throws ReadingException, OutOfPagesException {
+	// Layout only calculates the section; its trim positions, open tags and following trimmed navPoints. Content of the returned section is not filled.
+	private BookSection getBookSection(int index, boolean isLayoutOnly) throws ReadingException, OutOfPagesException {
 
 		BookSection bookSection = null;
 
 		NavPoint navPoint = getNavPoint(index);
 
-		if (Optionals.maxContentPerSection == 0 || navPoint.getTypeCode() == 0 || navPoint.getTypeCode() == 1) { // Real navPoint - actual file/anchor.
-			bookSection = prepareBookSection(navPoint, index);
+		if (optionals.maxContentPerSection == 0 || navPoint.getTypeCode() == 0 || navPoint.getTypeCode() == 1) { // Real navPoint - actual file/anchor.
+			bookSection = prepareBookSection(navPoint, index, isLayoutOnly);
 		} else { // Pseudo navPoint - trimmed file entry.
-			bookSection = prepareTrimmedBookSection(navPoint, index);
+			bookSection = prepareTrimmedBookSection(navPoint, index, isLayoutOnly);
+		}
+
+		if (!isLayoutOnly) {
+			lastPageIndex = index;
 		}
 
-		getToc().setLastPageIndex(index);
 		return bookSection;
 	}
 
@@ -118,7 +409,7 @@ class Content {
 		}
 	}
 
-	private BookSection prepareBookSection(NavPoint navPoint, int index) throws ReadingException, OutOfPagesException {
+	private BookSection prepareBookSection(NavPoint navPoint, int index, boolean isLayoutOnly) throws ReadingException, OutOfPagesException {
 
 		BookSection bookSection = new BookSection();
 
@@ -126,7 +417,7 @@ class Content {
 		int trimEndPosition = navPoint.getBodyTrimEndPosition();
 		String entryName = navPoint.getEntryName();
 
-		String fileContentStr = null;
+		EntryContent entryContent = null;
 		String htmlBody = null;
 
 		if (!navPoint.isCalculated()) {
@@ -134,95 +425,103 @@ class Content {
 			String href = navPoint.getContentSrc();
 			String label = navPoint.getNavLabel();
 
-			boolean isSourceFileFound = false;
+			String fileName = getEntryIndex().findFileName(href);
 
-			for (int i = 0; i < getEntryNames().size(); i++) {
-				String fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(getEntryNames().get(i), Constants.SLASH));
+			if (fileName != null) {
+				entryName = getEntryIndex().findEntryName(fileName);
 
-				if (href.equals(fileName) || (href.startsWith(fileName) && href.replace(fileName, "").startsWith("%23"))) {
+				entryContent = readEntryContent(entryName);
+				htmlBody = entryContent.getHtmlBody(); // This must not be changed.
 
-					isSourceFileFound = true;
-					entryName = getEntryNames().get(i);
+				if (!href.equals(fileName)) { // Anchored, e.g. #pgepubid00058
+					Pair<Integer, Integer> bodyIntervals = getNextAvailableAnchorIndex2(index, entryName, htmlBody, href, fileName);
 
-					fileContentStr = readFileContent(entryName);
-					htmlBody = getHtmlBody(fileContentStr); // This must not be changed.
-
-					if (!href.equals(fileName)) { // Anchored, e.g. #pgepubid00058
-						Pair<Integer, Integer> bodyIntervals = getNextAvailableAnchorIndex2(index, entryName, htmlBody, href, fileName);
-
-						if (bodyIntervals != null) {
-							trimStartPosition = bodyIntervals.getFirst();
-							trimEndPosition = bodyIntervals.getSecond();
-						} else {
-							return getBookSection(index);
-						}
+					if (bodyIntervals != null) {
+						trimStartPosition = bodyIntervals.getFirst();
+						trimEndPosition = bodyIntervals.getSecond();
+					} else {
+						return getBookSection(index, isLayoutOnly);
 					}
+				}
 
-					String extension = ContextHelper.getTextAfterCharacter(fileName, Constants.DOT);
-					String mediaType = getMediaType(fileName);
-
-					// If fileContentStr is too long; crop it by the maxContentPerSection.
-					// Save the fileContent and position within a new navPoint, insert it after current index.
-					if (Optionals.maxContentPerSection != 0) { // maxContentPerSection is given.
-						int calculatedTrimEndPosition = calculateTrimEndPosition(entryName, htmlBody, trimStartPosition, trimEndPosition);
+				String extension = ContextHelper.getTextAfterCharacter(fileName, Constants.DOT);
+				String mediaType = getMediaType(fileName);
 
-						if (calculatedTrimEndPosition != -1) {
-							trimEndPosition = calculatedTrimEndPosition;
+				// Kept to render the section the same way once it's calculated.
+				BookSection sectionInfo = new BookSection();
+				sectionInfo.setExtension(extension);
+				sectionInfo.setLabel(label);
+				sectionInfo.setMediaType(mediaType);
 
-							NavPoint nextEntryNavPoint = new NavPoint();
+				getToc().getNavMap().getNavPoints().get(index).setSectionInfo(sectionInfo);
 
-							nextEntryNavPoint.setTypeCode(2);
-							nextEntryNavPoint.setEntryName(entryName);
-							nextEntryNavPoint.setBodyTrimStartPosition(trimEndPosition);
+				// If fileContentStr is too long; crop it by the maxContentPerSection.
+				// Save the fileContent and position within a new navPoint, insert it after current index.
+				if (optionals.maxContentPerSection != 0) { // maxContentPerSection is given.
+					int calculatedTrimEndPosition = calculateTrimEndPosition(entryName, htmlBody, trimStartPosition, trimEndPosition);
 
-							getToc().getNavMap().getNavPoints().add(index + 1, nextEntryNavPoint);
+					if (calculatedTrimEndPosition != -1) {
+						trimEndPosition = calculatedTrimEndPosition;
 
-							// Inserting calculated info to avoid calculating this navPoint again. In the future these data could be written to Term of Contents file.
-							getToc().getNavMap().getNavPoints().get(index).setTypeCode(2); // To indicate that, this is a trimmed part. TODO: Change these with constants.
+						NavPoint nextEntryNavPoint = new NavPoint();
 
-							if (lastBookSectionInfo == null) {
-								lastBookSectionInfo = new BookSection();
-							}
+						nextEntryNavPoint.setTypeCode(2);
+						nextEntryNavPoint.setEntryName(entryName);
+						nextEntryNavPoint.setBodyTrimStartPosition(trimEndPosition);
+						nextEntryNavPoint.setSectionInfo(sectionInfo);
 
-							lastBookSectionInfo.setExtension(extension);
-							lastBookSectionInfo.setLabel(label);
-							lastBookSectionInfo.setMediaType(mediaType);
-						}
-					}
+						getToc().getNavMap().getNavPoints().add(index + 1, nextEntryNavPoint);
 
-					bookSection.setExtension(extension);
-					bookSection.setLabel(label);
-					bookSection.setMediaType(mediaType);
+						// Inserting calculated info to avoid calculating this navPoint again. In the future these data could be written to Term of Contents file.
+						getToc().getNavMap().getNavPoints().get(index).setTypeCode(2); // To indicate that, this is a trimmed part. TODO: Change these with constants.
 
-					break;
+						getLayout().setLastBookSectionInfo(sectionInfo);
+					}
 				}
-			}
 
-			if (!isSourceFileFound) {
+				bookSection.setExtension(extension);
+				bookSection.setLabel(label);
+				bookSection.setMediaType(mediaType);
+			} else {
 				System.out.println("Source file not found!");
 				getToc().getNavMap().getNavPoints().remove(index);
-				return getBookSection(index);
+				return getBookSection(index, isLayoutOnly);
 			}
 
 		} else { // Calculated before.
-			fileContentStr = readFileContent(entryName);
-			htmlBody = getHtmlBody(fileContentStr);
+			entryContent = readEntryContent(entryName);
+			htmlBody = entryContent.getHtmlBody();
+
+			if (navPoint.getSectionInfo() != null) {
+				bookSection.setExtension(navPoint.getSectionInfo().getExtension());
+				bookSection.setLabel(navPoint.getSectionInfo().getLabel());
+				bookSection.setMediaType(navPoint.getSectionInfo().getMediaType());
+			}
+		}
+
+		if (isLayoutOnly) {
+			if (optionals.cssStatus == CssStatus.OMIT) {
+				searchForTableTags(entryName, htmlBody, trimStartPosition, trimEndPosition);
+			}
+
+			appendIncompleteTags(htmlBody, entryName, index, trimStartPosition, trimEndPosition, true);
+			return bookSection;
 		}
 
-		if (Optionals.isIncludingTextContent) {
+		if (optionals.isIncludingTextContent) {
 			bookSection.setSectionTextContent(getOnlyTextContent(entryName, htmlBody, trimStartPosition, trimEndPosition));
 		}
 
-		if (Optionals.cssStatus == CssStatus.OMIT) {
+		if (optionals.cssStatus == CssStatus.OMIT) {
 			searchForTableTags(entryName, htmlBody, trimStartPosition, trimEndPosition);
 		}
 
-		String htmlBodyToReplace = appendIncompleteTags(htmlBody, entryName, index, trimStartPosition, trimEndPosition);
+		String htmlBodyToReplace = appendIncompleteTags(htmlBody, entryName, index, trimStartPosition, trimEndPosition, false);
 
 		htmlBodyToReplace = replaceImgTag(htmlBodyToReplace);
-		fileContentStr = fileContentStr.replace(htmlBody, htmlBodyToReplace);
+		String fileContentStr = entryContent.getFileContent(htmlBodyToReplace);
 
-		if (Optionals.cssStatus == CssStatus.DISTRIBUTE) {
+		if (optionals.cssStatus == CssStatus.DISTRIBUTE) {
 			fileContentStr = dissolveStyleTag(fileContentStr);
 		}
 
@@ -230,7 +529,7 @@ class Content {
 		return bookSection;
 	}
 
-	private BookSection prepareTrimmedBookSection(NavPoint entryNavPoint, int index) throws ReadingException, OutOfPagesException {
+	private BookSection prepareTrimmedBookSection(NavPoint entryNavPoint, int index, boolean isLayoutOnly) throws ReadingException, OutOfPagesException {
 
 		BookSection bookSection = new BookSection();
 
@@ -238,10 +537,13 @@ class Content {
 		int bodyTrimStartPosition = entryNavPoint.getBodyTrimStartPosition();
 		int bodyTrimEndPosition = entryNavPoint.getBodyTrimEndPosition(); // Will be calculated on the first attempt.
 
-		String fileContent = readFileContent(entryName);
-		String htmlBody = getHtmlBody(fileContent);
+		EntryContent entryContent = readEntryContent(entryName);
+		String htmlBody = entryContent.getHtmlBody();
 		String htmlBodyToReplace = null;
 
+		// Trimmed parts are rendered with the info of the navPoint they are trimmed from.
+		BookSection sectionInfo = entryNavPoint.getSectionInfo() != null ? entryNavPoint.getSectionInfo() : getLayout().getLastBookSectionInfo();
+
 		if (!entryNavPoint.isCalculated()) { // Not calculated before.
 			String nextAnchor = getNextAnchor(index, entryName);
 
@@ -261,7 +563,7 @@ class Content {
 					bodyTrimEndPosition = getNextAvailableAnchorIndex(index, entryName, bodyTrimStartPosition, htmlBody);
 
 					if (bodyTrimEndPosition == -1) {
-						return getBookSection(index);
+						return getBookSection(index, isLayoutOnly);
 					}
 				}
 			}
@@ -276,36 +578,41 @@ class Content {
 				nextEntryNavPoint.setTypeCode(2);
 				nextEntryNavPoint.setEntryName(entryName);
 				nextEntryNavPoint.setBodyTrimStartPosition(bodyTrimEndPosition);
+				nextEntryNavPoint.setSectionInfo(sectionInfo);
 
 				getToc().getNavMap().getNavPoints().add(index + 1, nextEntryNavPoint);
 			}
 
 		}
 
-		if (Optionals.cssStatus == CssStatus.OMIT) {
+		if (optionals.cssStatus == CssStatus.OMIT) {
 			searchForTableTags(entryName, htmlBody, bodyTrimStartPosition, bodyTrimEndPosition);
 		}
 
-		htmlBodyToReplace = appendIncompleteTags(htmlBody, entryName, index, bodyTrimStartPosition, bodyTrimEndPosition);
+		htmlBodyToReplace = appendIncompleteTags(htmlBody, entryName, index, bodyTrimStartPosition, bodyTrimEndPosition, isLayoutOnly);
+
+		if (isLayoutOnly) {
+			return bookSection;
+		}
 
 		htmlBodyToReplace = replaceImgTag(htmlBodyToReplace);
 
-		if (Optionals.isIncludingTextContent) {
+		if (optionals.isIncludingTextContent) {
 			bookSection.setSectionTextContent(getOnlyTextContent(entryName, htmlBody, bodyTrimStartPosition, bodyTrimEndPosition));
 		}
 
-		fileContent = fileContent.replace(htmlBody, htmlBodyToReplace);
+		String fileContent = entryContent.getFileContent(htmlBodyToReplace);
 
-		if (Optionals.cssStatus == CssStatus.DISTRIBUTE) {
+		if (optionals.cssStatus == CssStatus.DISTRIBUTE) {
 			fileContent = dissolveStyleTag(fileContent);
 		}
 
 		bookSection.setSectionContent(fileContent);
 
-		if (this.lastBookSectionInfo != null) {
-			bookSection.setExtension(this.lastBookSectionInfo.getExtension());
-			bookSection.setLabel(this.lastBookSectionInfo.getLabel());
-			bookSection.setMediaType(this.lastBookSectionInfo.getMediaType());
+		if (sectionInfo != null) {
+			bookSection.setExtension(sectionInfo.getExtension());
+			bookSection.setLabel(sectionInfo.getLabel());
+			bookSection.setMediaType(sectionInfo.getMediaType());
 		}
 
 		return bookSection;
@@ -320,128 +627,25 @@ class Content {
 	 */
 	private void calculateEntryTagPositions(String entryName, String htmlBody) {
 
-		List<Tag> tagList = new ArrayList<>();
-		this.entryTagPositions.put(entryName, tagList);
-
-		List<Tag> openedTags = null;
-		ListIterator<Tag> listIterator = null;
-
-		boolean isPossiblyTagOpened = false;
-		StringBuilder possiblyTag = new StringBuilder();
-
-		Pattern pattern = Pattern.compile(Constants.HTML_TAG_PATTERN);
-		Matcher matcher;
-
-		for (int i = 0; i < htmlBody.length(); i++) {
-			if (htmlBody.charAt(i) == Constants.TAG_OPENING) { // Tag might have been opened.
-				isPossiblyTagOpened = true;
-				possiblyTag.setLength(0); // In case of double occurence of '<' start from the next found tag opening; e.g. '< <p>'.
-			} else if (htmlBody.charAt(i) == Constants.TAG_CLOSING) { // Tag might have been closed.
-				possiblyTag.append(Constants.TAG_CLOSING);
-
-				// Warning: There may be looks to be opening tags but empty tags like <br>. Find a workaround for them. Or are they already skipped? Since the closing tag would never be found.
-				if (htmlBody.charAt(i - 1) != '/') { // Not an empty tag.
-					String tagStr = possiblyTag.toString();
-
-					matcher = pattern.matcher(tagStr);
-
-					if (matcher.matches()) {
-						if (tagStr.charAt(1) == '/') { // Closing tag. Match it with the last open tag with the same name.
-							String tagName = getFullTagName(tagStr, false);
-
-							listIterator = openedTags.listIterator(openedTags.size());
-
-							while (listIterator.hasPrevious()) {
-								Tag openedTag = listIterator.previous();
-
-								if (openedTag.getTagName().equals(tagName)) { // Found the last open tag with the same name.
-									addEntryTagPosition(entryName, openedTag.getFullTagName(), openedTag.getOpeningTagStartPosition(), i - tagName.length() - 1);
-									listIterator.remove();
-									break;
-								}
-							}
-						} else { // Opening tag.
-							if (openedTags == null) {
-								openedTags = new ArrayList<>();
-							}
-
-							String fullTagName = getFullTagName(tagStr, true);
-							String tagName = getTagName(fullTagName);
-
-							Tag tag = new Tag();
-							tag.setTagName(tagName);
-							tag.setFullTagName(fullTagName);
-							tag.setOpeningTagStartPosition(i - fullTagName.length());
-
-							openedTags.add(tag);
-						}
-					}
-				} else { // Empty tag.
-					String tagStr = possiblyTag.toString();
-
-					matcher = pattern.matcher(tagStr);
-
-					if (matcher.matches()) {
-						int closingBracletIndex = tagStr.indexOf(Constants.TAG_CLOSING);
-						String tagName = tagStr.substring(1, closingBracletIndex - 1);
+		TagTable tagTable = book != null ? book.findTagTable(getEntryKey(entryName)) : null;
 
-						addEntryTagPosition(entryName, tagName, i - tagName.length() - 1, i - tagName.length() - 1);
-					}
-				}
-
-				possiblyTag.setLength(0);
-				isPossiblyTagOpened = false;
-			}
-
-			if (isPossiblyTagOpened) {
-				possiblyTag.append(htmlBody.charAt(i));
-			}
-		}
+		putEntryTagPositions(entryName, tagTable != null ? tagTable : new TagTable(htmlBody));
 	}
 
-	private void addEntryTagPosition(String entryName, String fullTagName, int openingPosition, int closingPosition) {
-
-		Tag tag = new Tag();
-		tag.setOpeningTagStartPosition(openingPosition);
-		tag.setClosingTagStartPosition(closingPosition);
-		tag.setFullTagName(fullTagName);
-		tag.setTagName(getTagName(fullTagName));
+	// Tags of a shared book are found once, by any of its readers. Each layout keeps its own omitted marks.
+	private void putEntryTagPositions(String entryName, TagTable tagTable) {
 
-		List<Tag> tagList = this.entryTagPositions.get(entryName);
-
-		int index = tagList.size();
-		while (index > 0 && tagList.get(index - 1).getOpeningTagStartPosition() > openingPosition) {
-			index--;
+		if (book != null) {
+			tagTable.buildIndexes(); // Shared ones are only read.
+			tagTable = book.putTagTable(getEntryKey(entryName), tagTable).copyWithOwnOmittedTags();
 		}
 
-		tagList.add(index, tag);
-
-	}
-
-	private String getFullTagName(String tag, boolean isOpeningTag) {
-
-		int closingBracletIndex = tag.indexOf(Constants.TAG_CLOSING);
-		if (isOpeningTag) {
-			return tag.substring(1, closingBracletIndex);
-		} else {
-			return tag.substring(2, closingBracletIndex);
-		}
+		getLayout().getEntryTagPositions().put(entryName, tagTable);
 	}
 
-	private String getTagName(String fullTagName) {
-
-		if (fullTagName.contains(" ")) {
-			fullTagName = fullTagName.trim();
-
-			int endIndex = 1;
-			while (fullTagName.length() > endIndex && fullTagName.charAt(endIndex) != ' ') {
-				endIndex++;
-			}
-
-			return fullTagName.substring(0, endIndex);
-		} else {
-			return fullTagName;
-		}
+	// Key of the decoded entry; it's decoded differently with different options.
+	private String getEntryKey(String entryName) {
+		return EntryContentCache.getKey(entryName, optionals.cssStatus, optionals.isOmittingTitleTag);
 	}
 
 	private Pair<Integer, Integer> getNextAvailableAnchorIndex2(int index, String entryName, String htmlBody, String href, String fileName) throws ReadingException, OutOfPagesException {
@@ -556,7 +760,7 @@ class Content {
 						}
 					}
 
-					this.peakPage -= markedNavPoints;
+					getLayout().setPeakPage(getLayout().getPeakPage() - markedNavPoints);
 				}
 
 			}
@@ -587,7 +791,7 @@ class Content {
 
 			String possiblyNextEntryName = getNavPoint(index).getContentSrc();
 
-			String fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(entryName, Constants.SLASH));
+			String fileName = getEntryIndex().getFileName(entryName);
 
 			if (possiblyNextEntryName.startsWith(fileName) && possiblyNextEntryName.replace(fileName, "").startsWith("%23")) {
 				String anchor = possiblyNextEntryName.replace(fileName, "");
@@ -628,7 +832,7 @@ class Content {
 				}
 			}
 
-			this.peakPage -= markedNavPoints;
+			getLayout().setPeakPage(getLayout().getPeakPage() - markedNavPoints);
 		}
 
 		if (isNavigatingToNextFile) {
@@ -664,69 +868,21 @@ class Content {
 
 	private int calculateTrimEndPosition(String entryName, String htmlBody, int trimStartPosition, int trimEndPos) {
 
-		int trimEndPosition = (trimEndPos != 0 && (trimEndPos - trimStartPosition) < Optionals.maxContentPerSection) ? trimEndPos : trimStartPosition + Optionals.maxContentPerSection;
-
-		int htmlBodyLength = htmlBody.length();
+		int sectionEndPosition = trimEndPos != 0 ? trimEndPos : htmlBody.length();
 
 		// Don't need to trim. HtmlBody with tags are already below limit.
-		if (htmlBodyLength < trimEndPosition || (trimEndPosition - trimStartPosition) < Optionals.maxContentPerSection) {
+		if ((sectionEndPosition - trimStartPosition) <= optionals.maxContentPerSection) {
 			return -1;
 		}
 
-		List<Tag> tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
-
-		int loopCount = 0;
-		int lastTagsLength = 0;
-
-		while (true) {
-			int tagsLength = 0;
+		TagTable tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
 
-			for (Tag tag : tagStartEndPositions) {
+		// Where the visible text, without tags, reaches maxContentPerSection.
+		int trimEndPosition = tagStartEndPositions.findVisiblePosition(tagStartEndPositions.getVisibleLength(trimStartPosition) + optionals.maxContentPerSection);
 
-				if (tag.getOpeningTagStartPosition() > trimEndPosition) {
-					break;
-				}
-
-				if (tag.getOpeningTagStartPosition() == tag.getClosingTagStartPosition()) {
-					if (tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition) { // Empty Tag.
-						tagsLength += tag.getFullTagName().length() + 3; // < />
-					}
-				} else {
-					if (tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition) { // Opening tag.
-						tagsLength += tag.getFullTagName().length() + 2; // < >
-					}
-
-					if (tag.getClosingTagStartPosition() > trimStartPosition && tag.getClosingTagStartPosition() < trimEndPosition) { // Closing tag.
-						tagsLength += tag.getTagName().length() + 3; // < />
-					}
-				}
-			}
-
-			if (lastTagsLength == tagsLength) { // Tags length isn't greater than the last one. No need to keep going.
-				if (loopCount == 0) { // Returned on the first try. Don't need to trim. HtmlBody without tags are already below limit.
-					if (tagsLength == 0 && htmlBodyLength > trimEndPosition) { // If there are no tags in the trimmed part.
-						break;
-					}
-
-					return -1;
-				} else {
-					break;
-				}
-			}
-
-			trimEndPosition += tagsLength;
-
-			// If trimEndPosition is over the htmlBody's index; then htmlBody is already within limits. No need to trim.
-			if (trimEndPosition >= htmlBodyLength) {
-				return -1;
-			}
-
-			if (((trimEndPosition - trimStartPosition) - tagsLength) >= Optionals.maxContentPerSection) {
-				break;
-			}
-
-			lastTagsLength = tagsLength;
-			loopCount++;
+		// Rest of the section is already within limits. No need to trim.
+		if (trimEndPosition >= sectionEndPosition) {
+			return -1;
 		}
 
 		// TODO: Regex to find table tags like: <table(*.?)>[</table>|</>]
@@ -750,19 +906,20 @@ class Content {
 	}
 
 	// Checks if we are in an html tag. If so, move forward or backward until the tag is over. Else, move backwards until we hit the blank.
-	private int findEligibleEndPosition(List<Tag> tagStartEndPositions, String htmlBody, int trimEndPosition) {
+	private int findEligibleEndPosition(TagTable tagStartEndPositions, String htmlBody, int trimEndPosition) {
 
 		boolean isMovedToEndOfTag = false;
 
-		for (Tag tag : tagStartEndPositions) {
+		// Tags don't overlap; only the last tag opened or closed before the position may contain it.
+		int openedRow = tagStartEndPositions.findLastOpenedBefore(trimEndPosition);
+		int closedRow = tagStartEndPositions.findLastClosedBefore(trimEndPosition);
 
-			if (tag.getOpeningTagStartPosition() > trimEndPosition) {
-				break;
-			}
+		if (openedRow != -1) {
+			int openingPosition = tagStartEndPositions.getOpeningPosition(openedRow);
 
-			if (tag.getOpeningTagStartPosition() == tag.getClosingTagStartPosition()) { // Empty tag.
+			if (tagStartEndPositions.isEmptyTag(openedRow)) { // Empty tag.
 				// Inside an empty tag.
-				if (tag.getOpeningTagStartPosition() < trimEndPosition && (tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 2) > trimEndPosition) {
+				if ((openingPosition + tagStartEndPositions.getFullTagNameLength(openedRow) + 2) > trimEndPosition) {
 
 					while (htmlBody.charAt(trimEndPosition) != Constants.TAG_CLOSING) {
 						trimEndPosition++;
@@ -770,11 +927,10 @@ class Content {
 
 					trimEndPosition++;
 					isMovedToEndOfTag = true;
-					break;
 				}
 			} else {
 				// Inside an opening tag.
-				if (tag.getOpeningTagStartPosition() < trimEndPosition && (tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 1) > trimEndPosition) {
+				if ((openingPosition + tagStartEndPositions.getFullTagNameLength(openedRow) + 1) > trimEndPosition) {
 
 					while (htmlBody.charAt(trimEndPosition) != Constants.TAG_OPENING) {
 						trimEndPosition--;
@@ -782,20 +938,20 @@ class Content {
 
 					// trimEndPosition--;
 					isMovedToEndOfTag = true;
-					break;
 				}
+			}
+		}
 
-				// Inside a closing tag.
-				if (tag.getClosingTagStartPosition() < trimEndPosition && (tag.getClosingTagStartPosition() + tag.getTagName().length() + 2) > trimEndPosition) {
-
-					while (htmlBody.charAt(trimEndPosition) != Constants.TAG_CLOSING) {
-						trimEndPosition++;
-					}
+		if (!isMovedToEndOfTag && closedRow != -1 && !tagStartEndPositions.isEmptyTag(closedRow)) {
+			// Inside a closing tag.
+			if ((tagStartEndPositions.getClosingPosition(closedRow) + tagStartEndPositions.getTagName(closedRow).length() + 2) > trimEndPosition) {
 
+				while (htmlBody.charAt(trimEndPosition) != Constants.TAG_CLOSING) {
 					trimEndPosition++;
-					isMovedToEndOfTag = true;
-					break;
 				}
+
+				trimEndPosition++;
+				isMovedToEndOfTag = true;
 			}
 		}
 
@@ -827,7 +983,7 @@ class Content {
 				String nextHref = nextNavPoint.getContentSrc();
 
 				if (nextHref != null) {
-					String fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(entryName, Constants.SLASH));
+					String fileName = getEntryIndex().getFileName(entryName);
 
 					if (nextHref.startsWith(fileName) && nextHref.replace(fileName, "").startsWith("%23")) { // Both anchors are in the same file.
 						return nextHref.replace(fileName, "");
@@ -852,7 +1008,7 @@ class Content {
 			String prevHref = prevNavPoint.getContentSrc();
 
 			if (prevHref != null) {
-				String fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(entryName, Constants.SLASH));
+				String fileName = getEntryIndex().getFileName(entryName);
 
 				if (prevHref.startsWith(fileName)) { // Same content as previous, not reading for the first time. (&& prevHref.replace(fileName, "").startsWith("%23"))
 					return false;
@@ -864,15 +1020,36 @@ class Content {
 		return true;
 	}
 
-	// TODO: This operation is getting expensive and expensive. fileContent could be held in cache; if the entry is same. Maybe a map with one element -> <entryName, fileContent>
-	// If map doesn't contain that entryName -> then this method can be used.
+	// Returns the decoded content of the entry. Trimmed parts of the same entry are served from the cache instead of reading the entry again.
+	private EntryContent readEntryContent(String entryName) throws ReadingException {
+
+		String key = getEntryKey(entryName);
+
+		EntryContent entryContent = getEntryContentCache().get(key);
+
+		if (entryContent == null) {
+			entryContent = decodeEntryContent(entryName);
+
+			getEntryContentCache().put(key, entryContent);
+		}
+
+		return entryContent;
+	}
+
+	// Doesn't touch the cache, so it's safe to call from the paginate pool.
+	private EntryContent decodeEntryContent(String entryName) throws ReadingException {
+		String fileContent = readFileContent(entryName);
+		Pair<Integer, Integer> bodyInterval = getHtmlBodyInterval(fileContent);
+
+		return new EntryContent(fileContent.substring(0, bodyInterval.getFirst()), fileContent.substring(bodyInterval.getFirst(), bodyInterval.getSecond()),
+				fileContent.substring(bodyInterval.getSecond()));
+	}
+
 	private String readFileContent(String entryName) throws ReadingException {
 
-		ZipFile epubFile = null;
+		ZipFile epubFile = getEpubFile();
 
 		try {
-			epubFile = new ZipFile(zipFilePath);
-
 			ZipEntry zipEntry = epubFile.getEntry(entryName);
 			InputStream inputStream = epubFile.getInputStream(zipEntry);
 
@@ -891,13 +1068,13 @@ class Content {
 
 			String fileContentStr = fileContent.toString();
 
-			if (Optionals.cssStatus != CssStatus.OMIT) {
+			if (optionals.cssStatus != CssStatus.OMIT) {
 				fileContentStr = replaceCssLinkWithActualCss(epubFile, fileContentStr);
 			} else {
 				fileContentStr = removeStyleTags(fileContentStr);
 			}
 
-			if (Optionals.isOmittingTitleTag) {
+			if (optionals.isOmittingTitleTag) {
 				fileContentStr = removeTitleTags(fileContentStr);
 			}
 
@@ -914,19 +1091,16 @@ class Content {
 		} catch (TransformerException e) {
 			e.printStackTrace();
 			throw new ReadingException("TransformerException while reading content " + entryName + e.getMessage());
-		} finally {
-			try {
-				if (epubFile != null) {
-					epubFile.close();
-				}
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw new ReadingException("Error closing ZipFile: " + e.getMessage());
-			}
 		}
 	}
 
 	private String getHtmlBody(String htmlContent) throws ReadingException {
+		Pair<Integer, Integer> bodyInterval = getHtmlBodyInterval(htmlContent);
+		return htmlContent.substring(bodyInterval.getFirst(), bodyInterval.getSecond());
+	}
+
+	// Start and end positions of the html body, without the body tags.
+	private Pair<Integer, Integer> getHtmlBodyInterval(String htmlContent) throws ReadingException {
 
 		int startOfBody = htmlContent.lastIndexOf(Constants.TAG_BODY_START);
 		int endOfBody = htmlContent.lastIndexOf(Constants.TAG_BODY_END);
@@ -938,7 +1112,7 @@ class Content {
 		}
 
 		if (startOfBody != -1 && endOfBody != -1) {
-			return htmlContent.substring(bodyStartEndIndex + 1, endOfBody);
+			return new Pair<>(bodyStartEndIndex + 1, endOfBody);
 		} else {
 			throw new ReadingException("Exception while getting book section : Html body tags not found.");
 		}
@@ -1182,55 +1356,39 @@ class Content {
 
 				if (cssHref.endsWith(".css")) { // Should we check for its type as well? text/css
 
-					if (nonExistingHrefList != null && nonExistingHrefList.contains(cssHref)) {
+					if (nonExistingHrefList.contains(cssHref)) {
 
 						htmlContent = htmlContent.replace(linkTag, "");
 
 					} else {
 
-						boolean isCssFileFound = false;
-
-						for (int i = 0; i < getEntryNames().size(); i++) {
-							String entryName = getEntryNames().get(i);
-
-							String fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(entryName, Constants.SLASH));
-
-							if (cssHref.equals(fileName)) { // css exists.
-								isCssFileFound = true;
+						String cssEntryName = getEntryIndex().findEntryName(cssHref, hrefMatcher.group(1));
 
-								ZipEntry zipEntry = epubFile.getEntry(entryName);
+						if (cssEntryName != null) { // css exists.
+							ZipEntry zipEntry = epubFile.getEntry(cssEntryName);
 
-								InputStream zipEntryInputStream = epubFile.getInputStream(zipEntry);
+							InputStream zipEntryInputStream = epubFile.getInputStream(zipEntry);
 
-								BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(zipEntryInputStream));
+							BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(zipEntryInputStream));
 
-								StringBuilder fileContent = new StringBuilder();
+							StringBuilder fileContent = new StringBuilder();
 
-								fileContent.append("<style type=\"text/css\">");
+							fileContent.append("<style type=\"text/css\">");
 
-								try {
-									String line;
-									while ((line = bufferedReader.readLine()) != null) {
-										fileContent.append(line);
-									}
-								} finally {
-									bufferedReader.close();
+							try {
+								String line;
+								while ((line = bufferedReader.readLine()) != null) {
+									fileContent.append(line);
 								}
-
-								fileContent.append("</style>");
-
-								htmlContent = htmlContent.replace(linkTag, fileContent.toString());
-
-								break;
+							} finally {
+								bufferedReader.close();
 							}
-						}
 
-						if (!isCssFileFound) {
-							System.out.println("Referenced css file not found!");
+							fileContent.append("</style>");
 
-							if (nonExistingHrefList == null) {
-								nonExistingHrefList = new ArrayList<>();
-							}
+							htmlContent = htmlContent.replace(linkTag, fileContent.toString());
+						} else {
+							System.out.println("Referenced css file not found!");
 
 							nonExistingHrefList.add(cssHref);
 
@@ -1290,58 +1448,41 @@ class Content {
 				String srcHref = ContextHelper.getTextAfterCharacter(srcMatcher.group(1), Constants.SLASH);
 				String encodedSrcHref = ContextHelper.encodeToUtf8(srcHref);
 
-				if (nonExistingHrefList != null && nonExistingHrefList.contains(srcHref)) {
+				if (nonExistingHrefList.contains(srcHref)) {
 					htmlBody = htmlBody.replace(imgPart, "");
 				} else {
 
-					boolean isImageFileFound = false;
+					String imageEntryName = getEntryIndex().findEntryName(encodedSrcHref, srcMatcher.group(1));
 
-					for (int i = 0; i < getEntryNames().size(); i++) {
-						String entryName = getEntryNames().get(i);
+					if (imageEntryName != null && optionals.resourceUrlProvider != null) { // Referenced by its url; the image isn't read.
+						String imgPartToReplace = imgPart.replace(srcMatcher.group(0), "src=\"" + optionals.resourceUrlProvider.getResourceUrl(imageEntryName) + "\"");
+						htmlBody = htmlBody.replace(imgPart, imgPartToReplace);
+					} else if (imageEntryName != null) { // image exists.
+						try {
+							String extension = ContextHelper.getTextAfterCharacter(encodedSrcHref, Constants.DOT);
 
-						String fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(entryName, Constants.SLASH));
-
-						if (encodedSrcHref.equals(fileName)) { // image exists.
-
-							isImageFileFound = true;
-
-							ZipFile epubFile = null;
+							ZipFile epubFile = getEpubFile();
+							ZipEntry zipEntry = epubFile.getEntry(imageEntryName);
+							InputStream zipEntryInputStream = epubFile.getInputStream(zipEntry); // Convert inputStream to Base64Binary.
+							byte[] imageAsBytes;
 
 							try {
-								String extension = ContextHelper.getTextAfterCharacter(fileName, Constants.DOT);
-
-								epubFile = new ZipFile(this.zipFilePath);
-								ZipEntry zipEntry = epubFile.getEntry(entryName);
-								InputStream zipEntryInputStream = epubFile.getInputStream(zipEntry); // Convert inputStream to Base64Binary.
-								byte[] imageAsBytes = ContextHelper.convertIsToByteArray(zipEntryInputStream);
-
-								byte[] imageAsBase64 = Base64.encodeBase64(imageAsBytes);
-								String imageContent = new String(imageAsBase64);
-
-								String src = "data:image/" + extension + ";base64," + imageContent;
-
-								htmlBody = htmlBody.replace(srcHref, src);
-								break;
-							} catch (IOException e) {
-								e.printStackTrace();
+								imageAsBytes = ContextHelper.convertIsToByteArray(zipEntryInputStream, zipEntry.getSize());
 							} finally {
-								if (epubFile != null) {
-									try {
-										epubFile.close();
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-								}
+								zipEntryInputStream.close();
 							}
-						}
-					}
 
-					if (!isImageFileFound) {
-						System.out.println("Referenced image file not found: " + srcHref);
+							byte[] imageAsBase64 = Base64.encodeBase64(imageAsBytes);
+							String imageContent = new String(imageAsBase64);
+
+							String src = "data:image/" + extension + ";base64," + imageContent;
 
-						if (nonExistingHrefList == null) {
-							nonExistingHrefList = new ArrayList<>();
+							htmlBody = htmlBody.replace(srcHref, src);
+						} catch (IOException e) {
+							e.printStackTrace();
 						}
+					} else {
+						System.out.println("Referenced image file not found: " + srcHref);
 
 						nonExistingHrefList.add(srcHref);
 
@@ -1372,29 +1513,21 @@ class Content {
 
 		if (tableTagMatcher.find()) {
 
-			List<Tag> tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
-
-			List<Tag> tableTagList = new ArrayList<>();
-
-			for (Tag tag : tagStartEndPositions) {
-
-				if (tag.getOpeningTagStartPosition() > trimEndPosition) {
-					break;
-				}
+			TagTable tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
 
-				if (tag.getTagName().equals("table")) {
+			List<Integer> tableTagList = new ArrayList<>(); // Indices in the tag table.
 
-					if (tag.getOpeningTagStartPosition() != tag.getClosingTagStartPosition()) { // Not an empty table tag.
+			for (int row : tagStartEndPositions.getTagsOpenedIn(trimStartPosition + 1, trimEndPosition)) { // Opening tag is within scope.
 
-						if (tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition) { // Opening tag is within scope.
+				if (tagStartEndPositions.getTagName(row).equals("table")) {
 
-							tableTagList.add(tag);
+					if (!tagStartEndPositions.isEmptyTag(row)) { // Not an empty table tag.
 
-							// if (tag.getClosingTagStartPosition() > trimStartPosition && tag.getClosingTagStartPosition() < trimEndPosition) { // Closing tag is also withing scope.
-							//
-							// }
+						tableTagList.add(row);
 
-						}
+						// if (tag.getClosingTagStartPosition() > trimStartPosition && tag.getClosingTagStartPosition() < trimEndPosition) { // Closing tag is also withing scope.
+						//
+						// }
 
 					}
 
@@ -1403,17 +1536,17 @@ class Content {
 			}
 
 			// Remove nested tables.
-			List<Tag> smallerTableTagList = new ArrayList<>();
+			List<Integer> smallerTableTagList = new ArrayList<>();
 
 			for (int i = 0; i < tableTagList.size(); i++) {
 
-				int tag1StartPosition = tableTagList.get(i).getOpeningTagStartPosition();
-				int tag1EndPosition = tableTagList.get(i).getClosingTagStartPosition();
+				int tag1StartPosition = tagStartEndPositions.getOpeningPosition(tableTagList.get(i));
+				int tag1EndPosition = tagStartEndPositions.getClosingPosition(tableTagList.get(i));
 
 				for (int j = i + 1; j < tableTagList.size(); j++) {
 
-					int tag2StartPosition = tableTagList.get(j).getOpeningTagStartPosition();
-					int tag2EndPosition = tableTagList.get(j).getClosingTagStartPosition();
+					int tag2StartPosition = tagStartEndPositions.getOpeningPosition(tableTagList.get(j));
+					int tag2EndPosition = tagStartEndPositions.getClosingPosition(tableTagList.get(j));
 
 					if (tag1StartPosition > tag2StartPosition && tag1EndPosition < tag2EndPosition) {
 						smallerTableTagList.add(tableTagList.get(i));
@@ -1429,44 +1562,27 @@ class Content {
 		}
 	}
 
-	private void markTableTags(String entryName, String htmlBody, int trimStartPosition, int trimEndPosition, List<Tag> tableTagPositions) {
+	private void markTableTags(String entryName, String htmlBody, int trimStartPosition, int trimEndPosition, List<Integer> tableTagIndices) {
 
-		List<Tag> tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
+		TagTable tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
 
-		for (int i = 0; i < tableTagPositions.size(); i++) {
+		for (int i = 0; i < tableTagIndices.size(); i++) {
 
-			int tableStartPosition = tableTagPositions.get(i).getOpeningTagStartPosition() - 1;
-			int tableEndPosition = tableTagPositions.get(i).getClosingTagStartPosition() - 1;
+			int tableStartPosition = tagStartEndPositions.getOpeningPosition(tableTagIndices.get(i)) - 1;
+			int tableEndPosition = tagStartEndPositions.getClosingPosition(tableTagIndices.get(i)) - 1;
 
-			for (Tag tag : tagStartEndPositions) {
-
-				if (tag.getOpeningTagStartPosition() > tableEndPosition) {
-					break;
-				}
+			for (int row : tagStartEndPositions.getTagsOpenedOrClosedIn(tableStartPosition + 1, tableEndPosition)) {
 
-				if (tag.getOpeningTagStartPosition() == tag.getClosingTagStartPosition()) { // Empty Tag
+				if (tagStartEndPositions.isEmptyTag(row)) { // Empty Tag
 
-					if (tag.getTagName().equals("img")) {
+					if (tagStartEndPositions.getTagName(row).equals("img")) {
 						continue;
 					}
 
 					// TODO: We may have to break the row tabs with new lines (<br/>).
-
-					if (tag.getOpeningTagStartPosition() > tableStartPosition && tag.getOpeningTagStartPosition() < tableEndPosition) {
-
-						tag.setOmitted(true);
-					}
-				} else {
-					if (tag.getOpeningTagStartPosition() > tableStartPosition && tag.getOpeningTagStartPosition() < tableEndPosition) { // Opening tag.
-
-						tag.setOmitted(true);
-					}
-
-					if (tag.getClosingTagStartPosition() > tableStartPosition && tag.getClosingTagStartPosition() < tableEndPosition) { // Closing tag.
-
-						tag.setOmitted(true);
-					}
 				}
+
+				tagStartEndPositions.setOmitted(row); // Opening or closing tag.
 			}
 		}
 	}
@@ -1474,7 +1590,7 @@ class Content {
 	// Removes all the tags from htmlBody and returns it.
 	private String getOnlyTextContent(String entryName, String htmlBody, int trimStartPosition, int trimEndPosition) {
 
-		List<Tag> tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
+		TagTable tagStartEndPositions = getTagStartEndPositions(entryName, htmlBody);
 
 		List<String> stringsToRemove = new ArrayList<>();
 
@@ -1482,44 +1598,44 @@ class Content {
 			trimEndPosition = htmlBody.length();
 		}
 
-		for (Tag tag : tagStartEndPositions) {
+		for (int row : tagStartEndPositions.getTagsOpenedOrClosedIn(trimStartPosition + 1, trimEndPosition)) {
 
-			if (tag.getOpeningTagStartPosition() > trimEndPosition) {
-				break;
-			}
+			int openingPosition = tagStartEndPositions.getOpeningPosition(row);
+			int closingPosition = tagStartEndPositions.getClosingPosition(row);
+			int fullTagNameLength = tagStartEndPositions.getFullTagNameLength(row);
 
-			if (tag.getOpeningTagStartPosition() == tag.getClosingTagStartPosition()) { // Empty Tag
-				if (tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition) {
+			if (openingPosition == closingPosition) { // Empty Tag
+				if (openingPosition > trimStartPosition && openingPosition < trimEndPosition) {
 
-					htmlBody = htmlBody.substring(0, tag.getOpeningTagStartPosition() - 1) + Constants.STRING_MARKER
-							+ htmlBody.substring(tag.getOpeningTagStartPosition() - 1 + Constants.STRING_MARKER.length(),
-									tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 2 - Constants.STRING_MARKER.length())
-							+ Constants.STRING_MARKER + htmlBody.substring(tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 2, htmlBody.length());
+					htmlBody = htmlBody.substring(0, openingPosition - 1) + Constants.STRING_MARKER
+							+ htmlBody.substring(openingPosition - 1 + Constants.STRING_MARKER.length(),
+									openingPosition + fullTagNameLength + 2 - Constants.STRING_MARKER.length())
+							+ Constants.STRING_MARKER + htmlBody.substring(openingPosition + fullTagNameLength + 2, htmlBody.length());
 
-					stringsToRemove.add(Constants.STRING_MARKER + htmlBody.substring(tag.getOpeningTagStartPosition() - 1 + Constants.STRING_MARKER.length(),
-							tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 2 - Constants.STRING_MARKER.length()) + Constants.STRING_MARKER);
+					stringsToRemove.add(Constants.STRING_MARKER + htmlBody.substring(openingPosition - 1 + Constants.STRING_MARKER.length(),
+							openingPosition + fullTagNameLength + 2 - Constants.STRING_MARKER.length()) + Constants.STRING_MARKER);
 				}
 			} else {
-				if (tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition) { // Opening tag.
+				if (openingPosition > trimStartPosition && openingPosition < trimEndPosition) { // Opening tag.
 
-					htmlBody = htmlBody.substring(0, tag.getOpeningTagStartPosition() - 1) + Constants.STRING_MARKER
-							+ htmlBody.substring(tag.getOpeningTagStartPosition() - 1 + Constants.STRING_MARKER.length(),
-									tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 1 - Constants.STRING_MARKER.length())
-							+ Constants.STRING_MARKER + htmlBody.substring(tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 1, htmlBody.length());
+					htmlBody = htmlBody.substring(0, openingPosition - 1) + Constants.STRING_MARKER
+							+ htmlBody.substring(openingPosition - 1 + Constants.STRING_MARKER.length(),
+									openingPosition + fullTagNameLength + 1 - Constants.STRING_MARKER.length())
+							+ Constants.STRING_MARKER + htmlBody.substring(openingPosition + fullTagNameLength + 1, htmlBody.length());
 
-					stringsToRemove.add(Constants.STRING_MARKER + htmlBody.substring(tag.getOpeningTagStartPosition() - 1 + Constants.STRING_MARKER.length(),
-							tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 1 - Constants.STRING_MARKER.length()) + Constants.STRING_MARKER);
+					stringsToRemove.add(Constants.STRING_MARKER + htmlBody.substring(openingPosition - 1 + Constants.STRING_MARKER.length(),
+							openingPosition + fullTagNameLength + 1 - Constants.STRING_MARKER.length()) + Constants.STRING_MARKER);
 				}
 
-				if (tag.getClosingTagStartPosition() > trimStartPosition && tag.getClosingTagStartPosition() < trimEndPosition) { // Closing tag.
+				if (closingPosition > trimStartPosition && closingPosition < trimEndPosition) { // Closing tag.
 
-					htmlBody = htmlBody.substring(0, tag.getClosingTagStartPosition() - 1) + Constants.STRING_MARKER
-							+ htmlBody.substring(tag.getClosingTagStartPosition() - 1 + Constants.STRING_MARKER.length(),
-									tag.getClosingTagStartPosition() + tag.getTagName().length() + 2 - Constants.STRING_MARKER.length())
-							+ Constants.STRING_MARKER + htmlBody.substring(tag.getClosingTagStartPosition() + tag.getTagName().length() + 2, htmlBody.length());
+					htmlBody = htmlBody.substring(0, closingPosition - 1) + Constants.STRING_MARKER
+							+ htmlBody.substring(closingPosition - 1 + Constants.STRING_MARKER.length(),
+									closingPosition + tagStartEndPositions.getTagName(row).length() + 2 - Constants.STRING_MARKER.length())
+							+ Constants.STRING_MARKER + htmlBody.substring(closingPosition + tagStartEndPositions.getTagName(row).length() + 2, htmlBody.length());
 
-					stringsToRemove.add(Constants.STRING_MARKER + htmlBody.substring(tag.getClosingTagStartPosition() - 1 + Constants.STRING_MARKER.length(),
-							tag.getClosingTagStartPosition() + tag.getTagName().length() + 2 - Constants.STRING_MARKER.length()) + Constants.STRING_MARKER);
+					stringsToRemove.add(Constants.STRING_MARKER + htmlBody.substring(closingPosition - 1 + Constants.STRING_MARKER.length(),
+							closingPosition + tagStartEndPositions.getTagName(row).length() + 2 - Constants.STRING_MARKER.length()) + Constants.STRING_MARKER);
 				}
 			}
 		}
@@ -1533,7 +1649,8 @@ class Content {
 		return htmlBody;
 	}
 
-	private String appendIncompleteTags(String htmlBody, String entryName, int index, int trimStartPosition, int trimEndPosition) throws ReadingException {
+	// If layout only, html isn't built; only the open tags of the next navPoint are set.
+	private String appendIncompleteTags(String htmlBody, String entryName, int index, int trimStartPosition, int trimEndPosition, boolean isLayoutOnly) throws ReadingException {
 
 		if (!getToc().getNavMap().getNavPoints().get(index).isCalculated()) {
 			getToc().getNavMap().getNavPoints().get(index).setBodyTrimStartPosition(trimStartPosition);
@@ -1552,20 +1669,14 @@ class Content {
 		List<Tag> openedNotClosedYetTags = new ArrayList<>(); // Opened in this scope and not yet closed tags. Appending only closing tags.
 		List<Tag> prevOpenedClosedTags = new ArrayList<>(); // Previously opened and closed in this scope. Appending only opening tags.
 
-		List<Tag> currentEntryTags = getTagStartEndPositions(entryName, htmlBody);
+		TagTable currentEntryTags = getTagStartEndPositions(entryName, htmlBody);
 
 		trimEndPosition = trimEndPosition == 0 ? htmlBody.length() : trimEndPosition;
 
-		for (int i = 0; i < currentEntryTags.size(); i++) {
-			Tag tag = currentEntryTags.get(i);
-
-			if (tag.getOpeningTagStartPosition() > trimEndPosition) {
-				break;
-			}
-
+		for (int row : currentEntryTags.getTagsSpanning(trimEndPosition)) {
 			// Opened in the trimmed part, closed after the trimmed part.
-			if (!tag.isOmitted() && tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition && tag.getClosingTagStartPosition() > trimEndPosition) {
-				openedNotClosedYetTags.add(tag);
+			if (!currentEntryTags.isOmitted(row) && currentEntryTags.getOpeningPosition(row) > trimStartPosition) {
+				openedNotClosedYetTags.add(currentEntryTags.getTag(row, htmlBody));
 			}
 		}
 
@@ -1585,58 +1696,60 @@ class Content {
 
 		}
 
-		Pair<String, List<String>> htmlBodyMarkingsPair = null;
-		if (Optionals.cssStatus == CssStatus.OMIT) { // Tag omitting only happens in replaceTableTag function when css status is given Omit.
-			htmlBodyMarkingsPair = markOmittedTags(currentEntryTags, htmlBody, trimStartPosition, trimEndPosition);
+		if (!isLayoutOnly) {
+			Pair<String, List<String>> htmlBodyMarkingsPair = null;
+			if (optionals.cssStatus == CssStatus.OMIT) { // Tag omitting only happens in replaceTableTag function when css status is given Omit.
+				htmlBodyMarkingsPair = markOmittedTags(currentEntryTags, htmlBody, trimStartPosition, trimEndPosition);
 
-			if (htmlBodyMarkingsPair != null) {
-				htmlBody = htmlBodyMarkingsPair.getFirst();
+				if (htmlBodyMarkingsPair != null) {
+					htmlBody = htmlBodyMarkingsPair.getFirst();
+				}
 			}
-		}
 
-		// Warning: We shouldn't substring htmlBody before this method.
-		if (trimEndPosition == htmlBody.length()) {
-			htmlBodyToReplace = htmlBody.substring(trimStartPosition);
-		} else {
-			htmlBodyToReplace = htmlBody.substring(trimStartPosition, trimEndPosition);
-		}
+			// Warning: We shouldn't substring htmlBody before this method.
+			if (trimEndPosition == htmlBody.length()) {
+				htmlBodyToReplace = htmlBody.substring(trimStartPosition);
+			} else {
+				htmlBodyToReplace = htmlBody.substring(trimStartPosition, trimEndPosition);
+			}
 
-		if (htmlBodyMarkingsPair != null) {
+			if (htmlBodyMarkingsPair != null) {
 
-			List<String> stringsToRemove = htmlBodyMarkingsPair.getSecond();
+				List<String> stringsToRemove = htmlBodyMarkingsPair.getSecond();
 
-			if (stringsToRemove != null) {
-				for (String stringToRemove : stringsToRemove) {
+				if (stringsToRemove != null) {
+					for (String stringToRemove : stringsToRemove) {
 
-					if (stringToRemove.contains("|tr")) {
-						htmlBodyToReplace = htmlBodyToReplace.replace(stringToRemove, "<br/>");
-					} else {
-						htmlBodyToReplace = htmlBodyToReplace.replace(stringToRemove, "");
-					}
+						if (stringToRemove.contains("|tr")) {
+							htmlBodyToReplace = htmlBodyToReplace.replace(stringToRemove, "<br/>");
+						} else {
+							htmlBodyToReplace = htmlBodyToReplace.replace(stringToRemove, "");
+						}
 
+					}
 				}
-			}
 
-		}
+			}
 
-		String openingTags = "";
-		String closingTags = "";
+			String openingTags = "";
+			String closingTags = "";
 
-		if (!openedNotClosedYetTags.isEmpty()) {
-			closingTags += prepareClosingTags(openedNotClosedYetTags);
-		}
+			if (!openedNotClosedYetTags.isEmpty()) {
+				closingTags += prepareClosingTags(openedNotClosedYetTags);
+			}
 
-		if (!prevOpenedNotClosedYetTags.isEmpty()) {
-			openingTags += prepareOpeningTags(prevOpenedNotClosedYetTags);
-			closingTags += prepareClosingTags(prevOpenedNotClosedYetTags);
-		}
+			if (!prevOpenedNotClosedYetTags.isEmpty()) {
+				openingTags += prepareOpeningTags(prevOpenedNotClosedYetTags);
+				closingTags += prepareClosingTags(prevOpenedNotClosedYetTags);
+			}
 
-		if (!prevOpenedClosedTags.isEmpty()) {
-			openingTags += prepareOpeningTags(prevOpenedClosedTags);
-		}
+			if (!prevOpenedClosedTags.isEmpty()) {
+				openingTags += prepareOpeningTags(prevOpenedClosedTags);
+			}
 
-		if (!openingTags.isEmpty() || !closingTags.isEmpty()) {
-			htmlBodyToReplace = openingTags + htmlBodyToReplace + closingTags;
+			if (!openingTags.isEmpty() || !closingTags.isEmpty()) {
+				htmlBodyToReplace = openingTags + htmlBodyToReplace + closingTags;
+			}
 		}
 
 		if (getToc().getNavMap().getNavPoints().size() > (index + 1)) { // If this is not the last page, next navPoint should start with not closed yet tags because they are not closed in this navPoint as well.
@@ -1652,35 +1765,34 @@ class Content {
 		return htmlBodyToReplace;
 	}
 
-	private Pair<String, List<String>> markOmittedTags(List<Tag> currentEntryTags, String htmlBody, int trimStartPosition, int trimEndPosition) {
+	private Pair<String, List<String>> markOmittedTags(TagTable currentEntryTags, String htmlBody, int trimStartPosition, int trimEndPosition) {
 
 		boolean isHtmlBodyModified = false;
 		List<String> stringsToRemove = null;
 
-		for (Tag tag : currentEntryTags) {
+		for (int row : currentEntryTags.getTagsOpenedOrClosedIn(trimStartPosition + 1, trimEndPosition)) {
 
-			if (tag.getOpeningTagStartPosition() > trimEndPosition) {
-				break;
-			}
+			int openingPosition = currentEntryTags.getOpeningPosition(row);
+			int closingPosition = currentEntryTags.getClosingPosition(row);
 
-			if (!tag.isOmitted()) {
+			if (!currentEntryTags.isOmitted(row)) {
 				continue;
 			}
 
 			int fromIndex = -1;
 			int toIndex = -1;
 
-			if (tag.getOpeningTagStartPosition() == tag.getClosingTagStartPosition()) { // Empty Tag
-				if (tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition) {
+			if (openingPosition == closingPosition) { // Empty Tag
+				if (openingPosition > trimStartPosition && openingPosition < trimEndPosition) {
 
-					fromIndex = tag.getOpeningTagStartPosition() - 1;
-					toIndex = tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 2;
+					fromIndex = openingPosition - 1;
+					toIndex = openingPosition + currentEntryTags.getFullTagNameLength(row) + 2;
 				}
 			} else {
-				if (tag.getOpeningTagStartPosition() > trimStartPosition && tag.getOpeningTagStartPosition() < trimEndPosition) { // Opening tag.
+				if (openingPosition > trimStartPosition && openingPosition < trimEndPosition) { // Opening tag.
 
-					fromIndex = tag.getOpeningTagStartPosition() - 1;
-					toIndex = tag.getOpeningTagStartPosition() + tag.getFullTagName().length() + 1;
+					fromIndex = openingPosition - 1;
+					toIndex = openingPosition + currentEntryTags.getFullTagNameLength(row) + 1;
 
 				}
 
@@ -1698,10 +1810,10 @@ class Content {
 					isHtmlBodyModified = true;
 				}
 
-				if (tag.getClosingTagStartPosition() > trimStartPosition && tag.getClosingTagStartPosition() < trimEndPosition) { // Closing tag.
+				if (closingPosition > trimStartPosition && closingPosition < trimEndPosition) { // Closing tag.
 
-					fromIndex = tag.getClosingTagStartPosition() - 1;
-					toIndex = tag.getClosingTagStartPosition() + tag.getTagName().length() + 2;
+					fromIndex = closingPosition - 1;
+					toIndex = closingPosition + currentEntryTags.getTagName(row).length() + 2;
 
 				}
 			}
@@ -1726,6 +1838,109 @@ class Content {
 	}
 
 	byte[] getCoverImage() throws ReadingException {
+
+		String coverImageEntryName = findCoverImageEntryName();
+
+		if (coverImageEntryName == null) {
+			return null;
+		}
+
+		InputStream inputStream = openEntry(coverImageEntryName);
+
+		try {
+			return ContextHelper.convertIsToByteArray(inputStream, getEpubFile().getEntry(coverImageEntryName).getSize());
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("IOException while converting inputStream to byte array: " + e.getMessage());
+		} finally {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	// Stream of the cover image entry, null if the book has no cover. Closed by the caller.
+	InputStream openCoverImage() throws ReadingException {
+
+		String coverImageEntryName = findCoverImageEntryName();
+
+		if (coverImageEntryName == null) {
+			return null;
+		}
+
+		return openHandedOutEntry(coverImageEntryName);
+	}
+
+	// Stream of the file the href points to. Closed by the caller.
+	InputStream openResource(String href) throws ReadingException {
+
+		String entryName = findResourceEntryName(href);
+
+		if (entryName == null) {
+			throw new ReadingException("Resource not found: " + href);
+		}
+
+		return openHandedOutEntry(entryName);
+	}
+
+	// Entry the href points to, e.g. ../images/figure1.png -> OEBPS/images/figure1.png. Entry names are matched as they are. Null if there is no such entry.
+	private String findResourceEntryName(String href) throws ReadingException {
+
+		listEntryNames();
+
+		if (getEntryIndex().containsEntryName(href)) {
+			return href;
+		}
+
+		return getEntryIndex().findEntryName(getEntryIndex().getFileName(href), href);
+	}
+
+	// Stream read by the caller, maybe on another thread. The epub file is kept open until the stream is closed, even if the content is closed or replaced meanwhile.
+	private InputStream openHandedOutEntry(String entryName) throws ReadingException {
+
+		if (book != null) {
+			book.openEpubFile();
+
+			InputStream inputStream = null;
+
+			try {
+				inputStream = openEntry(entryName);
+			} finally {
+				if (inputStream == null) {
+					book.releaseEpubFile();
+				}
+			}
+
+			return new HandedOutInputStream(inputStream, book, null);
+		}
+
+		InputStream inputStream = openEntry(entryName);
+
+		if (openStreams == null) {
+			openStreams = new OpenStreams(getEpubFile());
+		}
+
+		openStreams.open();
+
+		return new HandedOutInputStream(inputStream, null, openStreams);
+	}
+
+	private InputStream openEntry(String entryName) throws ReadingException {
+
+		ZipFile epubFile = getEpubFile();
+		ZipEntry zipEntry = epubFile.getEntry(entryName);
+
+		try {
+			return epubFile.getInputStream(zipEntry);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("IOException while reading " + entryName + " file: " + e.getMessage());
+		}
+	}
+
+	private String findCoverImageEntryName() throws ReadingException {
 		Metadata metadata = this.opfPackage.getMetadata();
 
 		if (this.opfPackage != null && metadata != null) {
@@ -1736,51 +1951,35 @@ class Content {
 
 				for (XmlItem xmlItem : manifestXmlItems) {
 					if (xmlItem.getAttributes().get("id").equals(coverImageId)) {
-						String coverImageEntryName = xmlItem.getAttributes().get("href");
+						String coverImageHref = xmlItem.getAttributes().get("href");
 
-						if (coverImageEntryName != null && !coverImageEntryName.equals("")) {
-							ZipFile epubFile = null;
-							try {
-								try {
-									epubFile = new ZipFile(this.getZipFilePath());
-								} catch (IOException e) {
-									e.printStackTrace();
-									throw new ReadingException("Error initializing ZipFile: " + e.getMessage());
-								}
+						if (coverImageHref != null && !coverImageHref.equals("")) {
+							String coverImageEntryName = null;
 
-								for (String entryName : this.getEntryNames()) {
+							if (entryNames.isEmpty()) { // Info only content; entries aren't listed. Looked up by its path relative to the opf file instead.
+								coverImageEntryName = findOpfRelativeEntryName(coverImageHref);
 
-									// TODO: I might have to change this contains with equals.
-									if (entryName.contains(coverImageEntryName)) {
-										ZipEntry coverImageEntry = epubFile.getEntry(entryName);
-
-										InputStream inputStream;
-										try {
-											inputStream = epubFile.getInputStream(coverImageEntry);
-										} catch (IOException e) {
-											e.printStackTrace();
-											throw new ReadingException("IOException while reading " + entryName + " file: " + e.getMessage());
-										}
-
-										try {
-											return ContextHelper.convertIsToByteArray(inputStream);
-										} catch (IOException e) {
-											e.printStackTrace();
-											throw new ReadingException("IOException while converting inputStream to byte array: " + e.getMessage());
-										}
-									}
+								if (coverImageEntryName == null) {
+									listEntryNames();
 								}
+							}
 
-							} finally {
-								try {
-									if (epubFile != null) {
-										epubFile.close();
+							if (coverImageEntryName == null) {
+								coverImageEntryName = getEntryIndex().findEntryName(getEntryIndex().getFileName(coverImageHref), coverImageHref);
+							}
+
+							if (coverImageEntryName == null) { // Not found by its name. Fall back to the looser search.
+								for (String entryName : this.getEntryNames()) {
+									if (entryName.contains(coverImageHref)) {
+										coverImageEntryName = entryName;
+										break;
 									}
-								} catch (IOException e) {
-									e.printStackTrace();
-									throw new ReadingException("Error closing ZipFile: " + e.getMessage());
 								}
 							}
+
+							if (coverImageEntryName != null) {
+								return coverImageEntryName;
+							}
 						}
 					}
 				}
@@ -1790,6 +1989,33 @@ class Content {
 		return null;
 	}
 
+	// Entry the href points to, e.g. images/cover.jpg -> OEBPS/images/cover.jpg, null if there is no such entry. Looked up in the zip directory without listing the entries.
+	private String findOpfRelativeEntryName(String href) throws ReadingException {
+
+		String opfFilePath = getContainer().getFullPathValue();
+		String entryName = opfFilePath.substring(0, opfFilePath.lastIndexOf(Constants.SLASH) + 1) + href;
+
+		return getEpubFile().getEntry(entryName) != null ? entryName : null;
+	}
+
+	// Info only content doesn't list the entries while it's filled; they're listed once a lookup needs them.
+	void listEntryNames() throws ReadingException {
+
+		if (!entryNames.isEmpty()) {
+			return;
+		}
+
+		Enumeration<? extends ZipEntry> entries = getEpubFile().entries();
+
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+
+			if (!entry.isDirectory()) {
+				addEntryName(entry.getName());
+			}
+		}
+	}
+
 	List<String> getEntryNames() {
 
 		return entryNames;
@@ -1797,22 +2023,147 @@ class Content {
 
 	void addEntryName(String zipEntryName) {
 		entryNames.add(zipEntryName);
+		entryIndex = null; // Rebuilt on the next lookup.
+	}
+
+	EntryIndex getEntryIndex() throws ReadingException {
+		if (entryIndex == null) {
+			EntryIndex entryIndex = new EntryIndex();
+
+			for (String entryName : entryNames) {
+				entryIndex.addEntryName(entryName);
+			}
+
+			this.entryIndex = entryIndex;
+		}
+
+		return entryIndex;
 	}
 
 	Container getContainer() {
 		return container;
 	}
 
+	void setContainer(Container container) {
+		this.container = container;
+	}
+
 	Package getPackage() {
 		return opfPackage;
 	}
 
+	void setPackage(Package opfPackage) {
+		this.opfPackage = opfPackage;
+	}
+
 	Toc getToc() {
-		return toc;
+		return getLayout().getToc();
 	}
 
+	// Reads the toc, e.g. loaded from a saved progress, on its own; it may be calculated with other options.
 	void setToc(Toc toc) {
-		this.toc = toc;
+		releaseLayout();
+
+		this.layout = new Layout(null, toc);
+		this.lastPageIndex = toc.getLastPageIndex();
+	}
+
+	// Sections loaded from the layout cache; a shared layout keeps its own if it's calculated as far.
+	void setLayout(Toc toc, int peakPage) {
+		Layout layout = getLayout();
+
+		synchronized (layout) {
+			if (layout.getKey() == null || layout.getPeakPage() < peakPage) {
+				layout.setToc(toc, peakPage);
+			}
+		}
+	}
+
+	// Acquires the book's layout for the options if it's not acquired yet.
+	Layout getLayout() {
+		if (layout == null) {
+			layout = book.acquireLayout(Layout.getKey(optionals));
+			isUsingBookLayout = true;
+		}
+
+		return layout;
+	}
+
+	private void releaseLayout() {
+		if (isUsingBookLayout) {
+			isUsingBookLayout = false;
+			book.releaseLayout(layout);
+			layout = null;
+		}
+	}
+
+	int getLastPageIndex() {
+		return lastPageIndex;
+	}
+
+	void setLastPageIndex(int lastPageIndex) {
+		this.lastPageIndex = lastPageIndex;
+	}
+
+	int getNavPointCount() {
+		Layout layout = getLayout();
+
+		synchronized (layout) {
+			return layout.getToc().getNavMap().getNavPoints().size();
+		}
+	}
+
+	byte[] encodeProgress() throws ReadingException {
+		Layout layout = getLayout();
+
+		synchronized (layout) {
+			return ProgressCodec.encode(layout.getToc(), lastPageIndex);
+		}
+	}
+
+	// Calculated sections, without the page read.
+	byte[] encodeLayout() throws ReadingException {
+		Layout layout = getLayout();
+
+		synchronized (layout) {
+			return ProgressCodec.encode(layout.getToc(), 0);
+		}
+	}
+
+	Book getBook() {
+		return book;
+	}
+
+	Optionals getOptionals() {
+		return optionals;
+	}
+
+	void setOptionals(Optionals optionals) {
+		if (isUsingBookLayout && !Layout.getKey(optionals).equals(layout.getKey())) { // Sections of the other options are calculated in their own layout.
+			releaseLayout();
+		}
+
+		this.optionals = optionals;
+
+		if (entryContentCache != null) { // A shared book's cache keeps the book's limit.
+			entryContentCache.setMaxSize(optionals.maxEntryContentCacheSize);
+		}
+	}
+
+	int getPeakPage() {
+		Layout layout = getLayout();
+
+		synchronized (layout) {
+			return layout.getPeakPage();
+		}
+	}
+
+	String getContentDigest() {
+		return contentDigest;
+	}
+
+	void setContentDigest(String contentDigest) {
+		this.contentDigest = contentDigest;
 	}
 
 	void setZipFilePath(String zipFilePath) {
@@ -1823,16 +2174,80 @@ class Content {
 		return this.zipFilePath;
 	}
 
-	List<Tag> getTagStartEndPositions(String entryName, String htmlBody) {
-		if (entryTagPositions == null || !entryTagPositions.containsKey(entryName)) {
-			if (entryTagPositions == null) {
-				entryTagPositions = new HashMap<>();
+	// Opens the epub file on the first call; the same handle serves every entry read afterwards.
+	ZipFile getEpubFile() throws ReadingException {
+		if (book != null) { // Shared handle; kept open by the book until this content is closed.
+			synchronized (this) {
+				if (!isUsingBookEpubFile) {
+					isUsingBookEpubFile = true;
+					return book.openEpubFile();
+				}
 			}
 
+			return book.getEpubFile();
+		}
+
+		if (epubFile == null) {
+			try {
+				epubFile = new ZipFile(zipFilePath);
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new ReadingException("Error initializing ZipFile: " + e.getMessage());
+			}
+		}
+
+		return epubFile;
+	}
+
+	void setEpubFile(ZipFile epubFile) {
+		this.epubFile = epubFile;
+	}
+
+	EntryContentCache getEntryContentCache() {
+		if (book != null) { // Shared cache; cleared by the book.
+			return book.getEntryContentCache();
+		}
+
+		if (entryContentCache == null) {
+			entryContentCache = new EntryContentCache(optionals.maxEntryContentCacheSize);
+		}
+
+		return entryContentCache;
+	}
+
+	// Releases the shared handle and layout. They're acquired again lazily if the content is read again.
+	void close() throws IOException {
+		if (entryContentCache != null) {
+			entryContentCache.clear();
+		}
+
+		releaseLayout();
+
+		synchronized (this) {
+			if (isUsingBookEpubFile) {
+				isUsingBookEpubFile = false;
+				book.releaseEpubFile();
+			}
+		}
+
+		if (epubFile != null) {
+			try {
+				if (openStreams == null || openStreams.release()) { // Otherwise the last open stream closes it.
+					epubFile.close();
+				}
+			} finally {
+				epubFile = null;
+				openStreams = null;
+			}
+		}
+	}
+
+	TagTable getTagStartEndPositions(String entryName, String htmlBody) {
+		if (!getLayout().getEntryTagPositions().containsKey(entryName)) {
 			calculateEntryTagPositions(entryName, htmlBody);
 		}
 
-		return entryTagPositions.get(entryName);
+		return getLayout().getEntryTagPositions().get(entryName);
 	}
 
 }
\ No newline at end of file
@@ -7,6 +7,9 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 import com.github.mertakdut.exception.ReadingException;
 
@@ -45,6 +48,39 @@ class ContextHelper {
 		return output.toByteArray();
 	}
 
+	// Reads into an array of the expected size, e.g. a zip entry's, so the bytes aren't copied again out of a growing buffer. Unknown (-1) or wrong sizes still read the whole stream.
+	static byte[] convertIsToByteArray(InputStream inputStream, long expectedSize) throws IOException {
+
+		if (expectedSize < 0 || expectedSize > Integer.MAX_VALUE - 8) {
+			return convertIsToByteArray(inputStream);
+		}
+
+		byte[] bytes = new byte[(int) expectedSize];
+		int offset = 0;
+		int bytesRead;
+
+		while (offset < bytes.length && (bytesRead = inputStream.read(bytes, offset, bytes.length - offset)) != -1) {
+			offset += bytesRead;
+		}
+
+		if (offset < bytes.length) {
+			return Arrays.copyOf(bytes, offset);
+		}
+
+		int nextByte = inputStream.read();
+
+		if (nextByte == -1) {
+			return bytes;
+		}
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length + 8192); // Longer than expected.
+		output.write(bytes);
+		output.write(nextByte);
+		output.write(convertIsToByteArray(inputStream));
+
+		return output.toByteArray();
+	}
+
 	static String getTextAfterCharacter(String text, char character) {
 
 		int lastCharIndex = text.lastIndexOf(character);
@@ -71,4 +107,23 @@ class ContextHelper {
 		}
 	}
 
+	// SHA-1 of the text as hex, e.g. to derive file names from paths.
+	static String digest(String text) throws ReadingException {
+
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+
+			StringBuilder hexBuilder = new StringBuilder(digest.length * 2);
+
+			for (byte b : digest) {
+				hexBuilder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return hexBuilder.toString();
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error while digesting " + text + ": " + e.getMessage());
+		}
+	}
+
 }
@@ -0,0 +1,99 @@
+package com.github.mertakdut;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.github.mertakdut.exception.ReadingException;
+
+// Scales cover images down to thumbnails. Kept apart from the rest since javax.imageio isn't on every platform, e.g. Android; it's only loaded once a thumbnail is asked for.
+class CoverThumbnail {
+
+	static final String FORMAT = "jpg";
+
+	// Decodes the image skipping the pixels not needed for the size, then scales the rest to fit in the size. Smaller images aren't scaled up. Encoded as jpg.
+	static byte[] create(InputStream imageInputStream, int maxWidth, int maxHeight) throws ReadingException {
+
+		BufferedImage image = decode(imageInputStream, maxWidth, maxHeight);
+
+		double scale = Math.min(1, Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight()));
+
+		int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+		BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB); // Jpg has no alpha; transparent parts are drawn on white.
+		Graphics2D graphics = thumbnail.createGraphics();
+
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+		} finally {
+			graphics.dispose();
+		}
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		try {
+			if (!ImageIO.write(thumbnail, FORMAT, outputStream)) {
+				throw new ReadingException("No " + FORMAT + " writer found for the cover thumbnail.");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error encoding the cover thumbnail: " + e.getMessage());
+		}
+
+		return outputStream.toByteArray();
+	}
+
+	private static BufferedImage decode(InputStream imageInputStream, int maxWidth, int maxHeight) throws ReadingException {
+
+		ImageInputStream inputStream = null;
+		ImageReader reader = null;
+
+		try {
+			inputStream = ImageIO.createImageInputStream(imageInputStream);
+			Iterator<ImageReader> readers = inputStream != null ? ImageIO.getImageReaders(inputStream) : null;
+
+			if (readers == null || !readers.hasNext()) {
+				throw new ReadingException("Cover image format is not supported.");
+			}
+
+			reader = readers.next();
+			reader.setInput(inputStream, true, true);
+
+			// Every nth pixel is read, keeping the image at least as large as the thumbnail.
+			int subsampling = Math.max(1, Math.min(reader.getWidth(0) / maxWidth, reader.getHeight(0) / maxHeight));
+
+			ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+			return reader.read(0, param);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error decoding the cover image: " + e.getMessage());
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.github.mertakdut;
+
+import java.io.File;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Saves the progress of all books into one directory. Useful when the books are on a read-only location.
+ */
+public class DirectoryProgressStore extends FileProgressStore {
+
+	private File directory;
+
+	public DirectoryProgressStore(File directory) {
+		this.directory = directory;
+	}
+
+	// Books with the same name may exist in different folders; file name carries a digest of the absolute path as well.
+	@Override
+	File getProgressFile(String bookFilePath) throws ReadingException {
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new ReadingException("Progress directory cannot be created: " + directory);
+		}
+
+		File bookFile = new File(bookFilePath);
+
+		return new File(directory, bookFile.getName() + "_" + ContextHelper.digest(bookFile.getAbsolutePath()) + Constants.DOT + Constants.SAVE_FILE_NAME);
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.github.mertakdut;
+
+// Decoded content of an entry, kept as its html body and the parts around it. The body isn't held a second time inside the whole content.
+class EntryContent {
+
+	private final String head; // Up to the body.
+	private final String htmlBody;
+	private final String tail; // From the end of the body.
+
+	EntryContent(String head, String htmlBody, String tail) {
+		this.head = head;
+		this.htmlBody = htmlBody;
+		this.tail = tail;
+	}
+
+	String getHtmlBody() {
+		return htmlBody;
+	}
+
+	// Whole content with the body replaced by the given one.
+	String getFileContent(String htmlBody) {
+		return new StringBuilder(head.length() + htmlBody.length() + tail.length()).append(head).append(htmlBody).append(tail).toString();
+	}
+
+	int length() {
+		return head.length() + htmlBody.length() + tail.length();
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.github.mertakdut;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the decoded contents of recently read entries, so trimmed parts of the same entry don't inflate and decode it again for every page. Least recently used entries are
+ * evicted once the total size exceeds the limit.
+ *
+ * Synchronized; a shared book's cache is used by all of its readers.
+ */
+class EntryContentCache {
+
+	private Map<String, EntryContent> entries;
+
+	private long maxSize; // in bytes.
+	private long size;
+
+	private int hitCount;
+	private int missCount;
+
+	EntryContentCache(long maxSize) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.maxSize = maxSize;
+	}
+
+	// Key has to include the options changing the decoded content, as they may be changed between reads.
+	static String getKey(String entryName, CssStatus cssStatus, boolean isOmittingTitleTag) {
+		return entryName + Constants.STRING_MARKER + cssStatus + Constants.STRING_MARKER + isOmittingTitleTag;
+	}
+
+	synchronized EntryContent get(String key) {
+		EntryContent entryContent = entries.get(key);
+
+		if (entryContent != null) {
+			hitCount++;
+		} else {
+			missCount++;
+		}
+
+		return entryContent;
+	}
+
+	synchronized void put(String key, EntryContent entryContent) {
+
+		long entrySize = getSize(entryContent);
+
+		if (entrySize > maxSize) { // Would evict everything else and still not fit.
+			return;
+		}
+
+		EntryContent oldEntryContent = entries.put(key, entryContent);
+
+		if (oldEntryContent != null) {
+			size -= getSize(oldEntryContent);
+		}
+
+		size += entrySize;
+
+		evict();
+	}
+
+	// Evicts the least recently used entries down to the new limit.
+	synchronized void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+
+		evict();
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	synchronized long getSize() {
+		return size;
+	}
+
+	synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	synchronized int getMissCount() {
+		return missCount;
+	}
+
+	private void evict() {
+		for (Iterator<EntryContent> iterator = entries.values().iterator(); size > maxSize && iterator.hasNext();) {
+			size -= getSize(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	// Strings are held as UTF-16; two bytes per char.
+	private long getSize(EntryContent entryContent) {
+		return 2L * entryContent.length();
+	}
+
+	// Debug
+	synchronized void print() {
+		System.out.println("\n\nPrinting EntryContentCache...\n");
+		System.out.println("entries: " + entries.size() + ", size: " + size + "/" + maxSize + ", hits: " + hitCount + ", misses: " + missCount);
+	}
+
+}
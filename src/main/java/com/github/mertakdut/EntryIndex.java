@@ -0,0 +1,128 @@
+package com.github.mertakdut;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Lookup table of the zip entries, built once per book. Entries can be found by their full path or by their encoded file name, the way hrefs in toc.ncx and html files refer to them.
+ */
+class EntryIndex {
+
+	private static final String ENCODED_ANCHOR = "%23";
+
+	private Map<String, String> fileNamesByEntryName;
+	private Map<String, List<String>> entryNamesByFileName; // Same file name may exist in different folders. Kept in archive order.
+
+	EntryIndex() {
+		fileNamesByEntryName = new HashMap<>();
+		entryNamesByFileName = new HashMap<>();
+	}
+
+	void addEntryName(String entryName) throws ReadingException {
+
+		String fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(entryName, Constants.SLASH));
+
+		fileNamesByEntryName.put(entryName, fileName);
+
+		List<String> entryNames = entryNamesByFileName.get(fileName);
+
+		if (entryNames == null) {
+			entryNames = new ArrayList<>(1);
+			entryNamesByFileName.put(fileName, entryNames);
+		}
+
+		entryNames.add(entryName);
+	}
+
+	boolean containsEntryName(String entryName) {
+		return fileNamesByEntryName.containsKey(entryName);
+	}
+
+	// Encoded file name of the entry, e.g. OEBPS/Text/chapter 1.xhtml -> chapter%201.xhtml
+	String getFileName(String entryName) throws ReadingException {
+
+		String fileName = fileNamesByEntryName.get(entryName);
+
+		if (fileName == null) {
+			fileName = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(entryName, Constants.SLASH));
+		}
+
+		return fileName;
+	}
+
+	/**
+	 * Finds the file name the href points to. Href may be anchored, e.g. chapter1.xhtml%23section2 -> chapter1.xhtml
+	 *
+	 * @param href
+	 *            encoded href.
+	 * @return encoded file name, null if there is no such entry.
+	 */
+	String findFileName(String href) {
+
+		if (entryNamesByFileName.containsKey(href)) {
+			return href;
+		}
+
+		int anchorIndex = href.indexOf(ENCODED_ANCHOR);
+
+		while (anchorIndex != -1) {
+			String fileName = href.substring(0, anchorIndex);
+
+			if (entryNamesByFileName.containsKey(fileName)) {
+				return fileName;
+			}
+
+			anchorIndex = href.indexOf(ENCODED_ANCHOR, anchorIndex + 1);
+		}
+
+		return null;
+	}
+
+	String findEntryName(String fileName) {
+		return findEntryName(fileName, null);
+	}
+
+	/**
+	 * Finds the entry with the given file name. If more than one entry has the same file name, the one whose path ends with the href is chosen; otherwise the first one in the archive.
+	 *
+	 * @param fileName
+	 *            encoded file name.
+	 * @param href
+	 *            relative path as referenced in content, e.g. ../images/cover.jpg. May be null.
+	 * @return entry name, null if there is no such entry.
+	 */
+	String findEntryName(String fileName, String href) {
+
+		List<String> entryNames = entryNamesByFileName.get(fileName);
+
+		if (entryNames == null) {
+			return null;
+		}
+
+		if (entryNames.size() > 1 && href != null) {
+			String relativePath = trimRelativePrefix(href);
+
+			for (String entryName : entryNames) {
+				if (entryName.equals(relativePath) || entryName.endsWith(Constants.SLASH + relativePath)) {
+					return entryName;
+				}
+			}
+		}
+
+		return entryNames.get(0);
+	}
+
+	private String trimRelativePrefix(String href) {
+
+		while (href.startsWith("../") || href.startsWith("./")) {
+			href = href.substring(href.indexOf(Constants.SLASH) + 1);
+		}
+
+		return href;
+	}
+
+}
@@ -0,0 +1,241 @@
+package com.github.mertakdut;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Reads the info of all the epub files in a directory and its subdirectories, many at once. Only the files needed for book info are parsed, as {@link Reader#setInfoContent(String)}
+ * does. A book that can't be read is reported and skipped; it doesn't stop the others.
+ */
+public class EpubBatch {
+
+	private final Executor executor; // null if a pool is created for each scan.
+	private final int maxInFlight;
+
+	private boolean isReadingCoverImage;
+
+	public static class Statistics {
+		private final int succeededCount;
+		private final int failedCount;
+		private final long byteCount;
+		private final long elapsedMillis;
+
+		Statistics(int succeededCount, int failedCount, long byteCount, long elapsedMillis) {
+			this.succeededCount = succeededCount;
+			this.failedCount = failedCount;
+			this.byteCount = byteCount;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		public int getSucceededCount() {
+			return succeededCount;
+		}
+
+		public int getFailedCount() {
+			return failedCount;
+		}
+
+		public int getFileCount() {
+			return succeededCount + failedCount;
+		}
+
+		/**
+		 * @return total size of the scanned files.
+		 */
+		public long getByteCount() {
+			return byteCount;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public double getBooksPerSecond() {
+			return elapsedMillis > 0 ? getFileCount() * 1000d / elapsedMillis : 0;
+		}
+
+		@Override
+		public String toString() {
+			return getFileCount() + " books (" + failedCount + " failed, " + byteCount + " bytes) in " + elapsedMillis + " ms, " + String.format("%.1f", getBooksPerSecond()) + " books/s";
+		}
+	}
+
+	/**
+	 * Scans on a pool of a thread per processor, created for each scan.
+	 */
+	public EpubBatch() {
+		this(null, Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	/**
+	 * @param executor
+	 *            runs the books' reads. Not shut down by the batch.
+	 * @param maxInFlight
+	 *            books submitted to the executor at most at once. Scanning waits for some to finish before submitting more, so a large directory doesn't fill the executor's queue.
+	 */
+	public EpubBatch(Executor executor, int maxInFlight) {
+
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+		}
+
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Reads the cover images of the books too. Default is false.
+	 *
+	 * @param isReadingCoverImage
+	 */
+	public void setIsReadingCoverImage(boolean isReadingCoverImage) {
+		this.isReadingCoverImage = isReadingCoverImage;
+	}
+
+	/**
+	 * Reads the info of the epub files under the directory. Returns when all are read. If the calling thread is interrupted, no more books are submitted; the ones already submitted
+	 * are waited for.
+	 *
+	 * @param directory
+	 * @param callback
+	 *            notified for each book.
+	 * @return statistics of the scan.
+	 * @throws ReadingException
+	 *             if the directory can't be listed. Subdirectories that can't be listed are reported to the callback and skipped.
+	 */
+	public Statistics scan(File directory, final BookInfoCallback callback) throws ReadingException {
+
+		if (directory == null || !directory.isDirectory()) {
+			throw new ReadingException("Not a directory: " + directory);
+		}
+
+		long startTime = System.currentTimeMillis();
+
+		final AtomicInteger succeededCount = new AtomicInteger();
+		final AtomicInteger failedCount = new AtomicInteger();
+		final AtomicLong byteCount = new AtomicLong();
+
+		ExecutorService pool = null;
+		Executor scanExecutor = this.executor;
+
+		if (scanExecutor == null) {
+			pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+			scanExecutor = pool;
+		}
+
+		final Semaphore inFlight = new Semaphore(maxInFlight);
+
+		try {
+			Deque<File> directories = new ArrayDeque<>(); // Walked one by one instead of recursively; deep trees don't grow the stack.
+			directories.push(directory);
+
+			while (!directories.isEmpty() && !Thread.currentThread().isInterrupted()) {
+				File currentDirectory = directories.pop();
+				File[] files = currentDirectory.listFiles(new FileFilter() {
+					@Override
+					public boolean accept(File file) {
+						return file.isDirectory() || file.getName().toLowerCase().endsWith(Constants.EXTENSION_EPUB);
+					}
+				});
+
+				if (files == null) {
+					ReadingException e = new ReadingException("Directory cannot be listed: " + currentDirectory);
+
+					if (currentDirectory == directory) {
+						throw e;
+					}
+
+					callback.onReadingFailed(currentDirectory.getPath(), e); // Skipped like an unreadable book.
+					continue;
+				}
+
+				for (final File file : files) {
+
+					if (file.isDirectory()) {
+						directories.push(file);
+						continue;
+					}
+
+					try {
+						inFlight.acquire();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+
+					Runnable task = new Runnable() {
+						@Override
+						public void run() {
+							try {
+								BookInfo bookInfo;
+								byteCount.addAndGet(file.length());
+
+								try {
+									bookInfo = readBookInfo(file.getPath());
+								} catch (Exception e) {
+									failedCount.incrementAndGet();
+									callback.onReadingFailed(file.getPath(), e);
+									return;
+								}
+
+								succeededCount.incrementAndGet();
+								callback.onBookInfo(bookInfo);
+							} finally {
+								inFlight.release();
+							}
+						}
+					};
+
+					try {
+						scanExecutor.execute(task);
+					} catch (RejectedExecutionException e) {
+						inFlight.release();
+						failedCount.incrementAndGet();
+						callback.onReadingFailed(file.getPath(), e);
+					}
+				}
+			}
+		} finally {
+			inFlight.acquireUninterruptibly(maxInFlight); // All the submitted ones are done once every permit is back.
+
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		return new Statistics(succeededCount.get(), failedCount.get(), byteCount.get(), System.currentTimeMillis() - startTime);
+	}
+
+	// A reader per book; readers aren't shared between threads.
+	private BookInfo readBookInfo(String filePath) throws ReadingException {
+
+		Reader reader = new Reader();
+
+		try {
+			reader.setInfoContent(filePath);
+
+			byte[] coverImage = isReadingCoverImage ? reader.getCoverImage() : null;
+
+			return new BookInfo(filePath, reader.getInfoPackage(), coverImage);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.github.mertakdut;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.github.mertakdut.exception.ReadingException;
+
+// Keeps files named by a key in a directory. Keys are digests of the content they're made from, so readers of the same book, at any path or on any thread, may write the same key at
+// once; every write goes through its own temporary file and the last one wins.
+class FileCache {
+
+	private final File directory;
+	private final String fileExtension;
+
+	FileCache(File directory, String fileExtension) {
+		this.directory = directory;
+		this.fileExtension = fileExtension;
+	}
+
+	// Returns null if nothing is cached for the key.
+	byte[] load(String key) throws ReadingException {
+
+		File file = getFile(key);
+
+		try {
+			return AtomicFile.read(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error reading cache file " + file + ": " + e.getMessage());
+		}
+	}
+
+	void save(String key, byte[] bytes) throws ReadingException {
+
+		File file = getFile(key);
+
+		try {
+			AtomicFile.write(file, bytes);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error writing cache file " + file + ": " + e.getMessage());
+		}
+	}
+
+	void delete(String key) {
+		try {
+			AtomicFile.delete(getFile(key));
+		} catch (ReadingException e) {
+			e.printStackTrace();
+		}
+	}
+
+	File getFile(String key) throws ReadingException {
+
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) { // May be created by another reader meanwhile.
+			throw new ReadingException("Cache directory cannot be created: " + directory);
+		}
+
+		return new File(directory, key + Constants.DOT + fileExtension);
+	}
+
+}
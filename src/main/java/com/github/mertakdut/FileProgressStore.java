@@ -0,0 +1,44 @@
+package com.github.mertakdut;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.github.mertakdut.exception.ReadingException;
+
+// Keeps each book's progress in its own small file. Saves go through AtomicFile, so an interrupted save never leaves a half written progress.
+abstract class FileProgressStore implements ProgressStore {
+
+	abstract File getProgressFile(String bookFilePath) throws ReadingException;
+
+	@Override
+	public boolean contains(String bookFilePath) throws ReadingException {
+		return AtomicFile.exists(getProgressFile(bookFilePath));
+	}
+
+	@Override
+	public byte[] load(String bookFilePath) throws ReadingException {
+
+		File progressFile = getProgressFile(bookFilePath);
+
+		try {
+			return AtomicFile.read(progressFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error reading progress file " + progressFile + ": " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void save(String bookFilePath, byte[] progress) throws ReadingException {
+
+		File progressFile = getProgressFile(bookFilePath);
+
+		try {
+			AtomicFile.write(progressFile, progress);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error writing progress file " + progressFile + ": " + e.getMessage());
+		}
+	}
+
+}
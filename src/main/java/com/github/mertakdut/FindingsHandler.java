@@ -0,0 +1,57 @@
+package com.github.mertakdut;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Passes the parsing events of container.xml, .opf and .ncx files to their findings. Parsing is stopped as soon as the findings have everything they need.
+ */
+class FindingsHandler extends DefaultHandler {
+
+	// Thrown to stop the parser, not an actual error.
+	static class FindingsCompletedException extends SAXException {
+
+		private static final long serialVersionUID = 5130270339398612409L;
+
+		FindingsCompletedException() {
+			super("Findings are completed.");
+		}
+	}
+
+	private BaseFindings findings;
+
+	FindingsHandler(BaseFindings findings) {
+		this.findings = findings;
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+		try {
+			if (findings.startElement(qName, attributes)) {
+				throw new FindingsCompletedException();
+			}
+		} catch (ReadingException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		try {
+			if (findings.endElement(qName)) {
+				throw new FindingsCompletedException();
+			}
+		} catch (ReadingException e) {
+			throw new SAXException(e);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		findings.characters(ch, start, length);
+	}
+
+}
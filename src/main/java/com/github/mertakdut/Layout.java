@@ -0,0 +1,72 @@
+package com.github.mertakdut;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Sections calculated with a set of options: the toc with its trimmed navPoints, how far it's calculated and the tags found while calculating. Readers of a shared book reading it with
+// the same options share one, and calculate and render the sections holding its lock; each reader only keeps the page it's on.
+class Layout {
+
+	private final String key; // null if it's only a reader's own, e.g. loaded from a saved progress.
+
+	private Toc toc;
+	private int peakPage; // Sections before it are calculated.
+
+	private final Map<String, TagTable> entryTagPositions = new HashMap<>(); // Tags of the trimmed entries; their omitted marks are set while calculating.
+	private BookSection lastBookSectionInfo;
+
+	private int readerCount; // Readers of the book using it; the book forgets it once they're all gone.
+
+	Layout(String key, Toc toc) {
+		this.key = key;
+		this.toc = toc;
+	}
+
+	// Options the sections depend on.
+	static String getKey(Optionals optionals) {
+		return optionals.maxContentPerSection + Constants.STRING_MARKER + optionals.cssStatus + Constants.STRING_MARKER + optionals.isOmittingTitleTag;
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	Toc getToc() {
+		return toc;
+	}
+
+	// Replaces the calculated sections, e.g. with the ones loaded from the layout cache.
+	void setToc(Toc toc, int peakPage) {
+		this.toc = toc;
+		this.peakPage = peakPage;
+	}
+
+	int getPeakPage() {
+		return peakPage;
+	}
+
+	void setPeakPage(int peakPage) {
+		this.peakPage = peakPage;
+	}
+
+	Map<String, TagTable> getEntryTagPositions() {
+		return entryTagPositions;
+	}
+
+	BookSection getLastBookSectionInfo() {
+		return lastBookSectionInfo;
+	}
+
+	void setLastBookSectionInfo(BookSection lastBookSectionInfo) {
+		this.lastBookSectionInfo = lastBookSectionInfo;
+	}
+
+	int getReaderCount() {
+		return readerCount;
+	}
+
+	void setReaderCount(int readerCount) {
+		this.readerCount = readerCount;
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.github.mertakdut;
+
+import java.io.File;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.github.mertakdut.exception.ReadingException;
+
+// Keeps the calculated layouts of books in a directory. Files are named by the layout key instead of the book path; the same book at another path or with other options gets its own layout.
+class LayoutCache extends FileCache {
+
+	// Part of the keys. Increased when the pagination changes, so layouts calculated by older versions aren't used.
+	private static final int LAYOUT_VERSION = 1;
+
+	LayoutCache(File directory) {
+		super(directory, Constants.LAYOUT_FILE_EXTENSION);
+	}
+
+	// Identifies the book's content wherever the file is. Taken from the zip directory; entries aren't read. The saved progress, if it's in the archive, is left out.
+	static String getContentDigest(ZipFile epubFile) throws ReadingException {
+
+		StringBuilder entriesBuilder = new StringBuilder();
+
+		Enumeration<? extends ZipEntry> entries = epubFile.entries();
+
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+
+			if (!entry.isDirectory() && !entry.getName().equals(Constants.SAVE_FILE_NAME)) {
+				entriesBuilder.append(entry.getName()).append(Constants.COLON).append(entry.getSize()).append(Constants.COLON).append(entry.getCrc()).append(Constants.SLASH);
+			}
+		}
+
+		return ContextHelper.digest(entriesBuilder.toString());
+	}
+
+	// Digest of the book's entries and the options the sections depend on.
+	static String getKey(String contentDigest, int maxContentPerSection, CssStatus cssStatus, boolean isOmittingTitleTag) throws ReadingException {
+		return ContextHelper.digest(LAYOUT_VERSION + "|" + contentDigest + "|" + maxContentPerSection + "|" + cssStatus + "|" + isOmittingTitleTag);
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.github.mertakdut;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the progress in memory only. Progress is lost when the store is garbage collected.
+ */
+public class MemoryProgressStore implements ProgressStore {
+
+	private Map<String, byte[]> progresses = new ConcurrentHashMap<>();
+
+	@Override
+	public boolean contains(String bookFilePath) {
+		return progresses.containsKey(bookFilePath);
+	}
+
+	@Override
+	public byte[] load(String bookFilePath) {
+		return progresses.get(bookFilePath);
+	}
+
+	@Override
+	public void save(String bookFilePath, byte[] progress) {
+		progresses.put(bookFilePath, progress.clone());
+	}
+
+}
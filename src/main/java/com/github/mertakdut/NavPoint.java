@@ -24,6 +24,29 @@ public class NavPoint implements Serializable {
 	private int bodyTrimEndPosition;
 	private List<Tag> openTags;
 	private boolean isCalculated;
+	private transient BookSection sectionInfo; // Extension, label and media type to render the section with. Found along with the trim positions.
+
+	// Open tags are shared; the list is replaced, never changed.
+	NavPoint copy() {
+
+		NavPoint copy = new NavPoint();
+		copy.id = id;
+		copy.playOrder = playOrder;
+		copy.navLabel = navLabel;
+		copy.contentSrc = contentSrc;
+		copy.type = type;
+		copy.value = value;
+		copy.markedToDelete = markedToDelete;
+		copy.typeCode = typeCode;
+		copy.entryName = entryName;
+		copy.bodyTrimStartPosition = bodyTrimStartPosition;
+		copy.bodyTrimEndPosition = bodyTrimEndPosition;
+		copy.openTags = openTags;
+		copy.isCalculated = isCalculated;
+		copy.sectionInfo = sectionInfo;
+
+		return copy;
+	}
 
 	String getId() {
 		return id;
@@ -129,6 +152,14 @@ public class NavPoint implements Serializable {
 		this.isCalculated = isCalculated;
 	}
 
+	BookSection getSectionInfo() {
+		return sectionInfo;
+	}
+
+	void setSectionInfo(BookSection sectionInfo) {
+		this.sectionInfo = sectionInfo;
+	}
+
 	@Override
 	public boolean equals(Object navPoint) {
 
@@ -1,8 +1,48 @@
 package com.github.mertakdut;
 
-class Optionals {
-	static int maxContentPerSection;
-	static CssStatus cssStatus = CssStatus.INCLUDE;
-	static boolean isIncludingTextContent;
-	static boolean isOmittingTitleTag;
+// Options of a reader. Immutable; setting an option makes a new one, so readers with different options don't affect each other.
+final class Optionals {
+
+	static final Optionals DEFAULT = new Optionals(0, CssStatus.INCLUDE, false, false, 8 * 1024 * 1024, null);
+
+	final int maxContentPerSection;
+	final CssStatus cssStatus;
+	final boolean isIncludingTextContent;
+	final boolean isOmittingTitleTag;
+	final long maxEntryContentCacheSize;
+	final ResourceUrlProvider resourceUrlProvider; // Images are inlined as base64 if null.
+
+	private Optionals(int maxContentPerSection, CssStatus cssStatus, boolean isIncludingTextContent, boolean isOmittingTitleTag, long maxEntryContentCacheSize, ResourceUrlProvider resourceUrlProvider) {
+		this.maxContentPerSection = maxContentPerSection;
+		this.cssStatus = cssStatus;
+		this.isIncludingTextContent = isIncludingTextContent;
+		this.isOmittingTitleTag = isOmittingTitleTag;
+		this.maxEntryContentCacheSize = maxEntryContentCacheSize;
+		this.resourceUrlProvider = resourceUrlProvider;
+	}
+
+	Optionals withMaxContentPerSection(int maxContentPerSection) {
+		return new Optionals(maxContentPerSection, cssStatus, isIncludingTextContent, isOmittingTitleTag, maxEntryContentCacheSize, resourceUrlProvider);
+	}
+
+	Optionals withCssStatus(CssStatus cssStatus) {
+		return new Optionals(maxContentPerSection, cssStatus, isIncludingTextContent, isOmittingTitleTag, maxEntryContentCacheSize, resourceUrlProvider);
+	}
+
+	Optionals withIncludingTextContent(boolean isIncludingTextContent) {
+		return new Optionals(maxContentPerSection, cssStatus, isIncludingTextContent, isOmittingTitleTag, maxEntryContentCacheSize, resourceUrlProvider);
+	}
+
+	Optionals withOmittingTitleTag(boolean isOmittingTitleTag) {
+		return new Optionals(maxContentPerSection, cssStatus, isIncludingTextContent, isOmittingTitleTag, maxEntryContentCacheSize, resourceUrlProvider);
+	}
+
+	Optionals withMaxEntryContentCacheSize(long maxEntryContentCacheSize) {
+		return new Optionals(maxContentPerSection, cssStatus, isIncludingTextContent, isOmittingTitleTag, maxEntryContentCacheSize, resourceUrlProvider);
+	}
+
+	Optionals withResourceUrlProvider(ResourceUrlProvider resourceUrlProvider) {
+		return new Optionals(maxContentPerSection, cssStatus, isIncludingTextContent, isOmittingTitleTag, maxEntryContentCacheSize, resourceUrlProvider);
+	}
+
 }
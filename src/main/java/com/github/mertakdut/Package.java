@@ -2,11 +2,14 @@ package com.github.mertakdut;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 
 import com.github.mertakdut.exception.ReadingException;
 
@@ -20,6 +23,16 @@ public class Package extends BaseFindings {
 
 	private boolean isMetadataFound, isManifestFound, isSpineFound, isGuideFound;
 
+	private boolean isInfoOnly; // Only metadata is collected, and the manifest if metadata names a cover. Spine and guide are skipped.
+
+	// Streaming state; the section being parsed and the direct child of it.
+	private String currentSectionName;
+	private List<XmlItem> currentXmlItemList;
+	private int currentDepth;
+	private String childNodeName;
+	private Map<String, String> childAttributes;
+	private StringBuilder childTextBuilder;
+
 	public Package() {
 		metadata = new Metadata();
 		manifest = new Manifest();
@@ -48,6 +61,8 @@ public class Package extends BaseFindings {
 		private String rights;
 		private String coverImageId;
 
+		private List<String> subjectList; // Filled while parsing.
+
 		public String getRights() {
 			return rights;
 		}
@@ -117,9 +132,6 @@ public class Package extends BaseFindings {
 		}
 
 		void fillAttributes(NodeList nodeList) throws ReadingException {
-			Field[] fields = Package.Metadata.class.getDeclaredFields();
-
-			List<String> subjectList = null;
 
 			for (int i = 0; i < nodeList.getLength(); i++) {
 				Node node = nodeList.item(i);
@@ -128,48 +140,60 @@ public class Package extends BaseFindings {
 					continue;
 				}
 
-				if (node.getNodeName().equals("meta")) {
-					if (node.hasAttributes()) {
-						NamedNodeMap nodeMap = node.getAttributes();
+				Map<String, String> attributes = null;
 
-						boolean isCoverImageNodeFound = false;
-						for (int j = 0; j < nodeMap.getLength(); j++) {
-							Node attribute = nodeMap.item(j);
+				if (node.hasAttributes()) {
+					NamedNodeMap nodeMap = node.getAttributes();
 
-							if (!isCoverImageNodeFound && attribute.getNodeName().equals("name") && attribute.getNodeValue().equals("cover")) { // This node states cover-image id.
-								isCoverImageNodeFound = true;
-								j = -1; // Start the search from the beginng to find 'content' value.
-							} else if (isCoverImageNodeFound && attribute.getNodeName().equals("content")) {
-								this.coverImageId = attribute.getNodeValue();
-								break;
-							}
+					attributes = new HashMap<>();
 
-						}
+					for (int j = 0; j < nodeMap.getLength(); j++) {
+						Node attribute = nodeMap.item(j);
+						attributes.put(attribute.getNodeName(), attribute.getNodeValue());
 					}
 				}
 
-				for (int j = 0; j < fields.length; j++) {
-					if (nodeList.item(i).getNodeName().contains(fields[j].getName())) {
-
-						if (fields[j].getName().equals("subject")) {
-							if (subjectList == null) {
-								subjectList = new ArrayList<>();
-							}
-							subjectList.add(nodeList.item(i).getTextContent());
-						} else {
-							fields[j].setAccessible(true);
-
-							try {
-								fields[j].set(this, nodeList.item(i).getTextContent());
-								break;
-							} catch (IllegalArgumentException | IllegalAccessException e) {
-								e.printStackTrace();
-								throw new ReadingException("Exception while parsing " + Constants.EXTENSION_OPF + " content: " + e.getMessage());
-							}
+				fillAttribute(node.getNodeName(), attributes, node.getTextContent());
+			}
+
+			completeAttributes();
+		}
+
+		// Fills the field matching with the node name, e.g. dc:title -> title. Subjects are collected until completeAttributes is called.
+		void fillAttribute(String nodeName, Map<String, String> attributes, String textContent) throws ReadingException {
+
+			if (nodeName.equals("meta") && attributes != null) {
+				if ("cover".equals(attributes.get("name")) && attributes.containsKey("content")) { // This node states cover-image id.
+					this.coverImageId = attributes.get("content");
+				}
+			}
+
+			Field[] fields = Package.Metadata.class.getDeclaredFields();
+
+			for (int j = 0; j < fields.length; j++) {
+				if (nodeName.contains(fields[j].getName())) {
+
+					if (fields[j].getName().equals("subject")) {
+						if (subjectList == null) {
+							subjectList = new ArrayList<>();
+						}
+						subjectList.add(textContent);
+					} else {
+						fields[j].setAccessible(true);
+
+						try {
+							fields[j].set(this, textContent);
+							break;
+						} catch (IllegalArgumentException | IllegalAccessException e) {
+							e.printStackTrace();
+							throw new ReadingException("Exception while parsing " + Constants.EXTENSION_OPF + " content: " + e.getMessage());
 						}
 					}
 				}
 			}
+		}
+
+		void completeAttributes() throws ReadingException {
 
 			if (subjectList != null) {
 				Field field;
@@ -181,6 +205,8 @@ public class Package extends BaseFindings {
 					e.printStackTrace();
 					throw new ReadingException("Exception while parsing subjects " + Constants.EXTENSION_OPF + " content: " + e.getMessage());
 				}
+
+				subjectList = null;
 			}
 		}
 
@@ -219,6 +245,10 @@ public class Package extends BaseFindings {
 			this.xmlItemList = nodeListToXmlItemList(nodeList);
 		}
 
+		void setXmlItemList(List<XmlItem> xmlItemList) {
+			this.xmlItemList = xmlItemList;
+		}
+
 		public List<XmlItem> getXmlItemList() {
 			return this.xmlItemList;
 		}
@@ -246,6 +276,10 @@ public class Package extends BaseFindings {
 			this.xmlItemList = nodeListToXmlItemList(nodeList);
 		}
 
+		void setXmlItemList(List<XmlItem> xmlItemList) {
+			this.xmlItemList = xmlItemList;
+		}
+
 		public List<XmlItem> getXmlItemList() {
 			return this.xmlItemList;
 		}
@@ -272,6 +306,10 @@ public class Package extends BaseFindings {
 			this.xmlItemList = nodeListToXmlItemList(nodeList);
 		}
 
+		void setXmlItemList(List<XmlItem> xmlItemList) {
+			this.xmlItemList = xmlItemList;
+		}
+
 		public List<XmlItem> getXmlItemList() {
 			return this.xmlItemList;
 		}
@@ -306,6 +344,80 @@ public class Package extends BaseFindings {
 		return isMetadataFound && isManifestFound && isSpineFound && isGuideFound;
 	}
 
+	void setInfoOnly(boolean isInfoOnly) {
+		this.isInfoOnly = isInfoOnly;
+	}
+
+	@Override
+	boolean startElement(String nodeName, Attributes attributes) {
+
+		if (currentSectionName == null) {
+			if (nodeName.equals("metadata") || nodeName.equals("manifest") || (!isInfoOnly && (nodeName.equals("spine") || nodeName.equals("guide")))) {
+				currentSectionName = nodeName;
+				currentXmlItemList = new ArrayList<>();
+				currentDepth = 0;
+			}
+		} else if (++currentDepth == 1) {
+			childNodeName = nodeName;
+			childAttributes = attributesToMap(attributes);
+			childTextBuilder = new StringBuilder();
+		}
+
+		return false;
+	}
+
+	@Override
+	boolean endElement(String nodeName) throws ReadingException {
+
+		if (currentSectionName == null) {
+			return false;
+		}
+
+		if (currentDepth == 0) { // Section is over.
+			if (currentSectionName.equals("metadata")) {
+				getMetadata().completeAttributes();
+				isMetadataFound = true;
+			} else if (currentSectionName.equals("manifest")) {
+				getManifest().setXmlItemList(currentXmlItemList);
+				isManifestFound = true;
+			} else if (currentSectionName.equals("spine")) {
+				getSpine().setXmlItemList(currentXmlItemList);
+				isSpineFound = true;
+			} else {
+				getGuide().setXmlItemList(currentXmlItemList);
+				isGuideFound = true;
+			}
+
+			currentSectionName = null;
+			currentXmlItemList = null;
+
+			if (isInfoOnly) { // Manifest is only needed to find the cover image.
+				return isMetadataFound && (isManifestFound || getMetadata().getCoverImageId() == null || getMetadata().getCoverImageId().equals(""));
+			}
+
+			return isMetadataFound && isManifestFound && isSpineFound && isGuideFound;
+		}
+
+		if (currentDepth-- == 1) { // Direct child of the section is over.
+			if (currentSectionName.equals("metadata")) {
+				getMetadata().fillAttribute(childNodeName, childAttributes, childTextBuilder.toString());
+			} else if (childAttributes != null) {
+				currentXmlItemList.add(createXmlItem(childTextBuilder.toString(), childAttributes));
+			}
+
+			childTextBuilder = null;
+		}
+
+		return false;
+	}
+
+	@Override
+	void characters(char[] ch, int start, int length) {
+		if (childTextBuilder != null) {
+			childTextBuilder.append(ch, start, length);
+		}
+	}
+
 	public Metadata getMetadata() {
 		return metadata;
 	}
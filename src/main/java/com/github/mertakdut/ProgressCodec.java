@@ -0,0 +1,383 @@
+package com.github.mertakdut;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Binary format of the saved progress; Toc with its navPoints and their open tags.
+ *
+ * Layout: magic, version, string table, tag table, toc. Numbers are zigzag varints, strings and tags are written once and referred by their index in the tables. Unlike java serialization,
+ * it doesn't depend on class layouts so progresses survive library updates.
+ *
+ * Version 2 adds the label, extension and media type each navPoint is rendered with. Version 1 is still read.
+ */
+class ProgressCodec {
+
+	private static final byte[] MAGIC = { 'E', 'P', 'P', 'G' };
+	private static final int VERSION = 2;
+
+	private static final int FLAG_MARKED_TO_DELETE = 1;
+	private static final int FLAG_CALCULATED = 1 << 1;
+
+	static boolean isEncoded(byte[] progress) {
+
+		if (progress.length < MAGIC.length) {
+			return false;
+		}
+
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (progress[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	static byte[] encode(Toc toc) throws ReadingException {
+		return encode(toc, toc.getLastPageIndex());
+	}
+
+	// Readers sharing a toc each save their own last page.
+	static byte[] encode(Toc toc, int lastPageIndex) throws ReadingException {
+
+		Encoder body = new Encoder();
+
+		List<NavPoint> navPoints = toc.getNavMap().getNavPoints();
+
+		// Tags are shared between the navPoints they stay open in. Write each one once.
+		List<Tag> tags = new ArrayList<>();
+		Map<Tag, Integer> tagIndices = new IdentityHashMap<>();
+
+		if (navPoints != null) {
+			for (NavPoint navPoint : navPoints) {
+				if (navPoint.getOpenTags() != null) {
+					for (Tag tag : navPoint.getOpenTags()) {
+						if (!tagIndices.containsKey(tag)) {
+							tagIndices.put(tag, tags.size());
+							tags.add(tag);
+						}
+					}
+				}
+			}
+		}
+
+		body.writeInt(tags.size());
+
+		for (Tag tag : tags) {
+			body.writeString(tag.getTagName());
+			body.writeString(tag.getFullTagName());
+			body.writeInt(tag.getOpeningTagStartPosition());
+			body.writeInt(tag.getClosingTagStartPosition());
+			body.writeInt(tag.isOmitted() ? 1 : 0);
+		}
+
+		Toc.Head head = toc.getHead();
+		body.writeString(head.getUid());
+		body.writeString(head.getDepth());
+		body.writeString(head.getTotalPageCount());
+		body.writeString(head.getMaxPageNumber());
+
+		body.writeInt(lastPageIndex);
+
+		if (navPoints == null) {
+			body.writeInt(-1);
+		} else {
+			body.writeInt(navPoints.size());
+
+			for (NavPoint navPoint : navPoints) {
+				body.writeString(navPoint.getId());
+				body.writeInt(navPoint.getPlayOrder());
+				body.writeString(navPoint.getNavLabel());
+				body.writeString(navPoint.getContentSrc());
+				body.writeString(navPoint.getType());
+				body.writeString(navPoint.getValue());
+				body.writeInt((navPoint.isMarkedToDelete() ? FLAG_MARKED_TO_DELETE : 0) | (navPoint.isCalculated() ? FLAG_CALCULATED : 0));
+				body.writeInt(navPoint.getTypeCode());
+				body.writeString(navPoint.getEntryName());
+				body.writeInt(navPoint.getBodyTrimStartPosition());
+				body.writeInt(navPoint.getBodyTrimEndPosition() - navPoint.getBodyTrimStartPosition());
+
+				BookSection sectionInfo = navPoint.getSectionInfo();
+
+				if (sectionInfo == null) {
+					body.writeInt(0);
+				} else {
+					body.writeInt(1);
+					body.writeString(sectionInfo.getLabel());
+					body.writeString(sectionInfo.getExtension());
+					body.writeString(sectionInfo.getMediaType());
+				}
+
+				List<Tag> openTags = navPoint.getOpenTags();
+
+				if (openTags == null) {
+					body.writeInt(-1);
+				} else {
+					body.writeInt(openTags.size());
+
+					for (Tag tag : openTags) {
+						body.writeInt(tagIndices.get(tag));
+					}
+				}
+			}
+		}
+
+		Encoder header = new Encoder();
+		header.write(MAGIC);
+		header.writeInt(VERSION);
+		header.writeInt(body.strings.size());
+
+		for (String string : body.strings) {
+			header.writeBytes(string);
+		}
+
+		header.write(body.toByteArray());
+
+		return header.toByteArray();
+	}
+
+	static Toc decode(byte[] progress) throws ReadingException {
+
+		if (!isEncoded(progress)) {
+			throw new ReadingException("Progress is not in a known format.");
+		}
+
+		try {
+			Decoder decoder = new Decoder(progress, MAGIC.length);
+
+			int version = decoder.readInt();
+
+			if (version != 1 && version != VERSION) {
+				throw new ReadingException("Unsupported progress version: " + version);
+			}
+
+			int stringCount = decoder.readCount(false);
+			String[] strings = new String[stringCount];
+
+			for (int i = 0; i < stringCount; i++) {
+				strings[i] = decoder.readBytes();
+			}
+
+			decoder.strings = strings;
+
+			int tagCount = decoder.readCount(false);
+			Tag[] tags = new Tag[tagCount];
+
+			for (int i = 0; i < tagCount; i++) {
+				Tag tag = new Tag();
+				tag.setTagName(decoder.readString());
+				tag.setFullTagName(decoder.readString());
+				tag.setOpeningTagStartPosition(decoder.readInt());
+				tag.setClosingTagStartPosition(decoder.readInt());
+				tag.setOmitted(decoder.readInt() == 1);
+
+				tags[i] = tag;
+			}
+
+			Toc toc = new Toc();
+
+			Toc.Head head = toc.getHead();
+			head.setUid(decoder.readString());
+			head.setDepth(decoder.readString());
+			head.setTotalPageCount(decoder.readString());
+			head.setMaxPageNumber(decoder.readString());
+
+			toc.setLastPageIndex(decoder.readInt());
+
+			int navPointCount = decoder.readCount(true);
+
+			if (navPointCount != -1) {
+				List<NavPoint> navPoints = new ArrayList<>(navPointCount);
+
+				for (int i = 0; i < navPointCount; i++) {
+					NavPoint navPoint = new NavPoint();
+					navPoint.setId(decoder.readString());
+					navPoint.setPlayOrder(decoder.readInt());
+					navPoint.setNavLabel(decoder.readString());
+					navPoint.setContentSrc(decoder.readString());
+					navPoint.setType(decoder.readString());
+					navPoint.setValue(decoder.readString());
+
+					int flags = decoder.readInt();
+					navPoint.setMarkedToDelete((flags & FLAG_MARKED_TO_DELETE) != 0);
+					navPoint.setCalculated((flags & FLAG_CALCULATED) != 0);
+
+					navPoint.setTypeCode(decoder.readInt());
+					navPoint.setEntryName(decoder.readString());
+					navPoint.setBodyTrimStartPosition(decoder.readInt());
+					navPoint.setBodyTrimEndPosition(navPoint.getBodyTrimStartPosition() + decoder.readInt());
+
+					if (version > 1 && decoder.readInt() == 1) {
+						BookSection sectionInfo = new BookSection();
+						sectionInfo.setLabel(decoder.readString());
+						sectionInfo.setExtension(decoder.readString());
+						sectionInfo.setMediaType(decoder.readString());
+
+						navPoint.setSectionInfo(sectionInfo);
+					}
+
+					int openTagCount = decoder.readCount(true);
+
+					if (openTagCount != -1) {
+						List<Tag> openTags = new ArrayList<>(openTagCount);
+
+						for (int j = 0; j < openTagCount; j++) {
+							openTags.add(tags[decoder.readInt()]);
+						}
+
+						navPoint.setOpenTags(openTags);
+					}
+
+					navPoints.add(navPoint);
+				}
+
+				toc.getNavMap().setNavPoints(navPoints);
+			}
+
+			return toc;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			e.printStackTrace();
+			throw new ReadingException("Progress is truncated or malformed: " + e.getMessage());
+		}
+	}
+
+	private static class Encoder extends ByteArrayOutputStream {
+
+		private List<String> strings = new ArrayList<>();
+		private Map<String, Integer> stringIndices = new HashMap<>();
+
+		// Zigzag varint; small positive and negative numbers take a single byte.
+		void writeInt(int value) {
+
+			int zigzag = (value << 1) ^ (value >> 31);
+
+			while ((zigzag & ~0x7F) != 0) {
+				write((zigzag & 0x7F) | 0x80);
+				zigzag >>>= 7;
+			}
+
+			write(zigzag);
+		}
+
+		// Writes the index of the string in the string table. 0 is null.
+		void writeString(String string) {
+
+			if (string == null) {
+				writeInt(0);
+				return;
+			}
+
+			Integer index = stringIndices.get(string);
+
+			if (index == null) {
+				index = strings.size();
+				stringIndices.put(string, index);
+				strings.add(string);
+			}
+
+			writeInt(index + 1);
+		}
+
+		void writeBytes(String string) throws ReadingException {
+			try {
+				byte[] bytes = string.getBytes("UTF-8");
+				writeInt(bytes.length);
+				write(bytes, 0, bytes.length);
+			} catch (UnsupportedEncodingException e) {
+				e.printStackTrace();
+				throw new ReadingException("UnsupportedEncoding while writing progress: " + e.getMessage());
+			}
+		}
+
+		@Override
+		public void write(byte[] bytes) {
+			write(bytes, 0, bytes.length);
+		}
+	}
+
+	private static class Decoder {
+
+		private byte[] bytes;
+		private int position;
+
+		private String[] strings;
+
+		Decoder(byte[] bytes, int position) {
+			this.bytes = bytes;
+			this.position = position;
+		}
+
+		int readInt() throws ReadingException {
+
+			int zigzag = 0;
+			int shift = 0;
+
+			while (true) {
+				byte b = bytes[position++];
+				zigzag |= (b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0) {
+					break;
+				}
+
+				shift += 7;
+
+				if (shift > 28) {
+					throw new ReadingException("Malformed number in progress.");
+				}
+			}
+
+			return (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+
+		// Number of the items that follow; -1 is null if nullable. Each item takes at least a byte, so a count larger than the bytes left is corrupt, not a large list.
+		int readCount(boolean isNullable) throws ReadingException {
+
+			int count = readInt();
+
+			if (count == -1 && isNullable) {
+				return count;
+			}
+
+			if (count < 0 || count > bytes.length - position) {
+				throw new ReadingException("Progress is truncated or malformed");
+			}
+
+			return count;
+		}
+
+		String readString() throws ReadingException {
+
+			int index = readInt();
+
+			return index == 0 ? null : strings[index - 1];
+		}
+
+		String readBytes() throws ReadingException {
+
+			int length = readInt();
+
+			if (length < 0 || position + length > bytes.length) {
+				throw new ReadingException("Malformed string in progress.");
+			}
+
+			try {
+				String string = new String(bytes, position, length, "UTF-8");
+				position += length;
+				return string;
+			} catch (UnsupportedEncodingException e) {
+				e.printStackTrace();
+				throw new ReadingException("UnsupportedEncoding while reading progress: " + e.getMessage());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.github.mertakdut;
+
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Persists the reading progress of books. Progress is handed over as an opaque byte array, stores don't need to know its format.
+ * 
+ * @see SidecarProgressStore
+ * @see DirectoryProgressStore
+ * @see MemoryProgressStore
+ * @see ArchiveProgressStore
+ */
+public interface ProgressStore {
+
+	/**
+	 * @param bookFilePath
+	 * @return true if a progress is saved for the book.
+	 * @throws ReadingException
+	 */
+	boolean contains(String bookFilePath) throws ReadingException;
+
+	/**
+	 * @param bookFilePath
+	 * @return saved progress of the book. null if there is none.
+	 * @throws ReadingException
+	 */
+	byte[] load(String bookFilePath) throws ReadingException;
+
+	/**
+	 * Replaces the saved progress of the book. A failed save must leave the previous progress intact.
+	 * 
+	 * @param bookFilePath
+	 * @param progress
+	 * @throws ReadingException
+	 */
+	void save(String bookFilePath, byte[] progress) throws ReadingException;
+
+}
@@ -0,0 +1,18 @@
+package com.github.mertakdut;
+
+/**
+ * Notified when a section requested by {@link Reader#readSectionAsync(int, java.util.concurrent.Executor, ReadSectionCallback)} is read. Called on the executor's thread. Not called
+ * if the request is canceled.
+ */
+public interface ReadSectionCallback {
+
+	void onSectionRead(int index, BookSection bookSection);
+
+	/**
+	 * @param index
+	 * @param exception
+	 *            ReadingException, or OutOfPagesException if index is greater than the page count.
+	 */
+	void onReadingFailed(int index, Exception exception);
+
+}
@@ -1,38 +1,70 @@
 package com.github.mertakdut;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import com.github.mertakdut.BaseFindings.XmlItem;
 import com.github.mertakdut.exception.OutOfPagesException;
 import com.github.mertakdut.exception.ReadingException;
 
-public class Reader {
+public class Reader implements Closeable {
 
 	private boolean isFoundNeeded;
 
+	private SAXParser saxParser;
+	private DocumentBuilder docBuilder; // Only needed if streaming fails.
+
 	private Content content;
 
 	private boolean isProgressFileFound;
+	private boolean isProgressFileInArchive;
+
+	private ProgressStore progressStore = new SidecarProgressStore();
+
+	private Optionals optionals = Optionals.DEFAULT;
+
+	private final Object lock = new Object(); // Held while the content is used; prefetcher uses it from its own thread.
+	private SectionPrefetcher prefetcher;
+	private final SerialExecutor sectionReads = new SerialExecutor(); // Async reads of this reader run one at a time, in order.
+
+	private LayoutCache layoutCache;
+	private boolean isLayoutCacheable; // False once the toc is replaced by a saved progress; it may be calculated with other options.
+	private int savedLayoutPeakPage; // Sections calculated in the cached layout. Layout is saved again only if more are calculated.
+
+	private ThumbnailCache thumbnailCache;
 
 	/**
 	 * Parses only needed files for book info.
@@ -41,7 +73,9 @@ public class Reader {
 	 * @throws ReadingException
 	 */
 	public void setInfoContent(String filePath) throws ReadingException {
-		fillContent(filePath, false, false);
+		synchronized (lock) {
+			fillInfoContent(filePath);
+		}
 	}
 
 	/**
@@ -51,7 +85,35 @@ public class Reader {
 	 * @throws ReadingException
 	 */
 	public void setFullContent(String filePath) throws ReadingException {
-		fillContent(filePath, true, false);
+		synchronized (lock) {
+			fillContent(filePath, false);
+		}
+	}
+
+	/**
+	 * Reads the shared book instead of parsing the file again. Readers of the same book share its parsed files, decoded entries and found tags, and readers with the same options
+	 * share the calculated sections; each keeps only the page it's on.
+	 * ArchiveProgressStore can't save into the epub file while it's shared.
+	 * 
+	 * @param book
+	 * @throws ReadingException
+	 */
+	public void setFullContent(Book book) throws ReadingException {
+		synchronized (lock) {
+			releaseContent();
+
+			this.content = new Content(optionals, book);
+
+			isProgressFileInArchive = book.getEntryNames().contains(Constants.SAVE_FILE_NAME);
+			isProgressFileFound = isProgressFileInArchive || (!(progressStore instanceof ArchiveProgressStore) && progressStore.contains(book.getFilePath()));
+
+			if (layoutCache != null) {
+				content.setContentDigest(book.getContentDigest());
+				isLayoutCacheable = true;
+
+				loadLayout();
+			}
+		}
 	}
 
 	/**
@@ -62,12 +124,14 @@ public class Reader {
 	 * @throws ReadingException
 	 */
 	public int setFullContentWithProgress(String filePath) throws ReadingException {
-		fillContent(filePath, true, true);
+		synchronized (lock) {
+			fillContent(filePath, true);
 
-		if (isProgressFileFound) {
-			return loadProgress();
-		} else {
-			return 0;
+			if (isProgressFileFound) {
+				return loadProgress();
+			} else {
+				return 0;
+			}
 		}
 	}
 
@@ -81,136 +145,451 @@ public class Reader {
 	 *             if index is greater than the page count.
 	 */
 	public BookSection readSection(int index) throws ReadingException, OutOfPagesException {
-		return content.maintainBookSections(index);
+		synchronized (lock) {
+			if (prefetcher == null) {
+				return content.maintainBookSections(index);
+			}
+
+			BookSection bookSection = prefetcher.get(content, index);
+
+			if (bookSection != null) {
+				content.setLastPageIndex(index);
+			} else { // Not prepared, e.g. jumped elsewhere. Stop preparing the previous ones first.
+				prefetcher.cancel();
+				bookSection = content.maintainBookSections(index);
+			}
+
+			prefetcher.schedule(content, index);
+
+			return bookSection;
+		}
+	}
+
+	/**
+	 * Reads the section on the executor. Requests to the same reader are read one at a time, in the order they're made, without holding a thread of the executor while waiting; requests
+	 * to different readers are read in parallel.
+	 * 
+	 * @param index
+	 * @param executor
+	 * @return the section. get throws ExecutionException caused by ReadingException, or OutOfPagesException if index is greater than the page count.
+	 */
+	public Future<BookSection> readSectionAsync(int index, Executor executor) {
+		return readSectionAsync(index, executor, null);
+	}
+
+	/**
+	 * Does the same job with readSectionAsync but also notifies the callback once the section is read, so no thread has to wait on the returned future.
+	 * 
+	 * @param index
+	 * @param executor
+	 * @param callback
+	 * @return the section.
+	 */
+	public Future<BookSection> readSectionAsync(final int index, Executor executor, final ReadSectionCallback callback) {
+
+		FutureTask<BookSection> task = new FutureTask<BookSection>(new Callable<BookSection>() {
+			@Override
+			public BookSection call() throws ReadingException, OutOfPagesException {
+				return readSection(index);
+			}
+		}) {
+			@Override
+			protected void done() {
+				if (callback == null || isCancelled()) {
+					return;
+				}
+
+				try {
+					callback.onSectionRead(index, get());
+				} catch (ExecutionException e) {
+					callback.onReadingFailed(index, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+				} catch (InterruptedException e) { // Not possible, it's done.
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		sectionReads.execute(task, executor);
+
+		return task;
+	}
+
+	/**
+	 * Prepares the sections after the read one in the background, so the following readSection calls are served from a cache. Sections are prepared one at a time on a daemon thread;
+	 * preparation is canceled when another section is read. 0 disables it, which is the default.
+	 * 
+	 * @param nextSectionCount
+	 *            count of the sections to prepare after the read one.
+	 * @param isIncludingPreviousSection
+	 *            to prepare the section before the read one as well.
+	 */
+	public void setPrefetch(int nextSectionCount, boolean isIncludingPreviousSection) {
+		setPrefetch(nextSectionCount, isIncludingPreviousSection, null);
+	}
+
+	/**
+	 * Does the same job with setPrefetch but prepares the sections on the given executor. The executor is not shut down by the reader.
+	 * 
+	 * @param nextSectionCount
+	 * @param isIncludingPreviousSection
+	 * @param executor
+	 */
+	public void setPrefetch(int nextSectionCount, boolean isIncludingPreviousSection, ExecutorService executor) {
+		synchronized (lock) {
+			if (prefetcher != null) {
+				prefetcher.close();
+			}
+
+			prefetcher = nextSectionCount > 0 || isIncludingPreviousSection ? new SectionPrefetcher(lock, nextSectionCount, isIncludingPreviousSection, executor) : null;
+		}
+	}
+
+	/**
+	 * Calculates every section of the book ahead of reading, without rendering them. Entries are read in parallel; readSection then only renders the requested section. Call it after
+	 * the options are set, as the sections depend on them.
+	 * 
+	 * @return page count of the book.
+	 * @throws ReadingException
+	 */
+	public int paginate() throws ReadingException {
+		ForkJoinPool pool = new ForkJoinPool();
+
+		try {
+			return paginate(pool);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Does the same job with paginate but reads the entries in the given pool.
+	 * 
+	 * @param pool
+	 * @return page count of the book.
+	 * @throws ReadingException
+	 */
+	public int paginate(ForkJoinPool pool) throws ReadingException {
+		synchronized (lock) {
+			int pageCount = content.paginate(pool);
+			saveLayout();
+
+			return pageCount;
+		}
 	}
 
 	// Optionals
 	public void setMaxContentPerSection(int maxContentPerSection) {
-		Optionals.maxContentPerSection = maxContentPerSection;
+		setOptionals(optionals.withMaxContentPerSection(maxContentPerSection));
 	}
 
 	public void setCssStatus(CssStatus cssStatus) {
-		Optionals.cssStatus = cssStatus;
+		setOptionals(optionals.withCssStatus(cssStatus));
 	}
 
 	public void setIsIncludingTextContent(boolean isIncludingTextContent) {
-		Optionals.isIncludingTextContent = isIncludingTextContent;
+		setOptionals(optionals.withIncludingTextContent(isIncludingTextContent));
 	}
 
 	public void setIsOmittingTitleTag(boolean isOmittingTitleTag) {
-		Optionals.isOmittingTitleTag = isOmittingTitleTag;
+		setOptionals(optionals.withOmittingTitleTag(isOmittingTitleTag));
+	}
+
+	/**
+	 * Sets the memory limit, in bytes, for the decoded entry contents kept while reading. Parts of an already read entry are served from this cache. 0 disables it. May be changed
+	 * while reading; entries over the new limit are dropped. Readers of a shared {@link Book} use the book's limit, set by {@link Book#open(String, long)}.
+	 * 
+	 * @param maxEntryContentCacheSize
+	 */
+	public void setMaxEntryContentCacheSize(long maxEntryContentCacheSize) {
+		setOptionals(optionals.withMaxEntryContentCacheSize(maxEntryContentCacheSize));
+	}
+
+	/**
+	 * @return reads of an entry served from the entry content cache. A shared {@link Book}'s cache counts the reads of all its readers.
+	 */
+	public int getEntryContentCacheHitCount() {
+		synchronized (lock) {
+			return content != null ? content.getEntryContentCache().getHitCount() : 0;
+		}
+	}
+
+	/**
+	 * @return reads of an entry that had to inflate and decode it, as it wasn't in the entry content cache.
+	 */
+	public int getEntryContentCacheMissCount() {
+		synchronized (lock) {
+			return content != null ? content.getEntryContentCache().getMissCount() : 0;
+		}
+	}
+
+	/**
+	 * Sets the urls images are referenced by in the sections. Images are then fetched by the app, e.g. through {@link #transferResource(String, java.nio.channels.WritableByteChannel)},
+	 * instead of being inlined into each section as base64. null inlines them, which is the default.
+	 * 
+	 * @param resourceUrlProvider
+	 */
+	public void setResourceUrlProvider(ResourceUrlProvider resourceUrlProvider) {
+		setOptionals(optionals.withResourceUrlProvider(resourceUrlProvider));
+	}
+
+	// Applies to the content being read as well. Sections prepared with the previous options are dropped.
+	private void setOptionals(Optionals optionals) {
+		synchronized (lock) {
+			this.optionals = optionals;
+
+			if (content != null) {
+				content.setOptionals(optionals);
+			}
+
+			if (prefetcher != null) {
+				prefetcher.clear();
+			}
+		}
 	}
 
 	// Additional operations
 	public Package getInfoPackage() {
-		return content.getPackage();
+		synchronized (lock) {
+			return content.getPackage();
+		}
 	}
 
+	/**
+	 * @return the toc being read. Readers of a shared {@link Book} with the same options share it; it's changed as any of them reads.
+	 */
 	public Toc getToc() {
-		return content.getToc();
+		synchronized (lock) {
+			return content.getToc();
+		}
 	}
 
 	public byte[] getCoverImage() throws ReadingException {
+		synchronized (lock) {
+			if (content != null) {
+				return content.getCoverImage();
+			}
 
-		if (content != null) {
-			return content.getCoverImage();
+			throw new ReadingException("Content info is not set.");
 		}
-
-		throw new ReadingException("Content info is not set.");
 	}
 
-	public void saveProgress(int lastPageIndex) throws ReadingException, OutOfPagesException {
+	/**
+	 * Opens a file of the book, e.g. an image, to be read as a stream instead of as a whole byte array. For a channel, wrap it with {@link java.nio.channels.Channels#newChannel}.
+	 * 
+	 * @param href
+	 *            path of the file as referenced in the book, e.g. ../images/figure1.png, or its entry name in the epub file.
+	 * @return the stream. Must be closed; the epub file is kept open until it is, even if the reader is closed or reads another book meanwhile.
+	 * @throws ReadingException
+	 *             if there is no such file.
+	 */
+	public InputStream openResource(String href) throws ReadingException {
+		synchronized (lock) {
+			if (content == null) {
+				throw new ReadingException("Content info is not set.");
+			}
 
-		if (lastPageIndex < content.getToc().getNavMap().getNavPoints().size()) {
-			content.getToc().setLastPageIndex(lastPageIndex);
-		} else {
-			throw new OutOfPagesException(lastPageIndex, content.getToc().getNavMap().getNavPoints().size());
+			return content.openResource(href);
 		}
-
-		saveProgress();
 	}
 
-	public void saveProgress() throws ReadingException {
-
-		ZipFile epubFile = null;
-		ZipOutputStream zipOutputStream = null;
-		ObjectOutputStream objectOutputStream = null;
+	/**
+	 * Writes a file of the book to the channel a buffer at a time, so large files aren't held in memory.
+	 * 
+	 * @param href
+	 *            path of the file as referenced in the book, e.g. ../images/figure1.png, or its entry name in the epub file.
+	 * @param channel
+	 *            left open.
+	 * @return number of bytes written.
+	 * @throws ReadingException
+	 *             if there is no such file, or it can't be written to the channel.
+	 */
+	public long transferResource(String href, WritableByteChannel channel) throws ReadingException {
 
-		String newFilePath = null;
+		InputStream inputStream = openResource(href);
 
 		try {
-			epubFile = new ZipFile(content.getZipFilePath());
+			ReadableByteChannel resourceChannel = Channels.newChannel(inputStream);
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+			long transferredByteCount = 0;
 
-			String fileName = new File(content.getZipFilePath()).getName();
-			newFilePath = content.getZipFilePath().replace(fileName, "tmp_" + fileName);
+			while (resourceChannel.read(buffer) != -1) {
+				buffer.flip();
 
-			zipOutputStream = new ZipOutputStream(new FileOutputStream(newFilePath));
+				while (buffer.hasRemaining()) {
+					transferredByteCount += channel.write(buffer);
+				}
 
-			Enumeration<? extends ZipEntry> entries = epubFile.entries();
-			while (entries.hasMoreElements()) {
-				ZipEntry entry = entries.nextElement();
+				buffer.clear();
+			}
 
-				if (entry.getName().equals(Constants.SAVE_FILE_NAME)) // Don't copy the progress file. We'll put the new one already.
-					continue;
+			return transferredByteCount;
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("Error transferring " + href + ": " + e.getMessage());
+		} finally {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
 
-				ZipEntry destEntry = new ZipEntry(entry.getName());
-				zipOutputStream.putNextEntry(destEntry);
-				if (!entry.isDirectory()) {
-					ContextHelper.copy(epubFile.getInputStream(entry), zipOutputStream);
+	/**
+	 * Returns the cover image scaled down to fit in the given size, encoded as jpg. Pixels not needed for the size are skipped while decoding, so large covers don't have to be
+	 * decoded whole. Kept in the thumbnail cache, if its directory is set; the next call is then a file read. Uses javax.imageio, which isn't available on Android.
+	 * 
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @return the thumbnail. null if the book has no cover.
+	 * @throws ReadingException
+	 *             if the cover can't be decoded.
+	 */
+	public byte[] getCoverThumbnail(int maxWidth, int maxHeight) throws ReadingException {
+
+		if (maxWidth < 1 || maxHeight < 1) {
+			throw new IllegalArgumentException("Thumbnail size must be positive: " + maxWidth + "x" + maxHeight);
+		}
+
+		ThumbnailCache thumbnailCache = this.thumbnailCache;
+		String thumbnailKey = null;
+		InputStream coverImage;
+
+		// Key and cover are taken from the same content. Decoded out of the lock; the stream keeps the epub file open.
+		synchronized (lock) {
+			if (content == null) {
+				throw new ReadingException("Content info is not set.");
+			}
+
+			if (thumbnailCache != null) {
+				thumbnailKey = ThumbnailCache.getKey(getContentDigest(), maxWidth, maxHeight);
+
+				byte[] thumbnail = thumbnailCache.load(thumbnailKey);
+
+				if (thumbnail != null) {
+					return thumbnail;
 				}
-				zipOutputStream.closeEntry();
 			}
 
-			ZipEntry progressFileEntry = new ZipEntry(Constants.SAVE_FILE_NAME);
-			zipOutputStream.putNextEntry(progressFileEntry);
-			objectOutputStream = new ObjectOutputStream(zipOutputStream);
-			objectOutputStream.writeObject(content.getToc());
-			zipOutputStream.closeEntry();
+			coverImage = content.openCoverImage();
+		}
 
-		} catch (IOException e) {
-			e.printStackTrace();
+		if (coverImage == null) {
+			return null;
+		}
 
-			File newFile = new File(newFilePath);
+		byte[] thumbnail;
 
-			if (newFile.exists()) {
-				newFile.delete();
+		try {
+			thumbnail = CoverThumbnail.create(coverImage, maxWidth, maxHeight);
+		} finally {
+			try {
+				coverImage.close();
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
+		}
 
-			throw new ReadingException("Error writing progressed ZipFile: " + e.getMessage());
-		} finally {
+		if (thumbnailCache != null) {
+			try {
+				thumbnailCache.save(thumbnailKey, thumbnail);
+			} catch (ReadingException e) { // Made again next time.
+				e.printStackTrace();
+			}
+		}
 
-			if (epubFile != null) {
-				try {
-					epubFile.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-					throw new ReadingException("Error closing ZipFile: " + e.getMessage());
-				}
+		return thumbnail;
+	}
+
+	public void saveProgress(int lastPageIndex) throws ReadingException, OutOfPagesException {
+		synchronized (lock) {
+			int navPointCount = content.getNavPointCount();
+
+			if (lastPageIndex < navPointCount) {
+				content.setLastPageIndex(lastPageIndex);
+			} else {
+				throw new OutOfPagesException(lastPageIndex, navPointCount);
+			}
+
+			saveProgress();
+		}
+	}
+
+	/**
+	 * Saves the reading progress through the progress store. Sidecar file next to the book is used unless another store is set.
+	 * 
+	 * @throws ReadingException
+	 */
+	public void saveProgress() throws ReadingException {
+		synchronized (lock) {
+			if (progressStore instanceof ArchiveProgressStore && content.getBook() != null) {
+				throw new ReadingException("Progress can't be saved into a shared book's file. Set another progress store.");
 			}
 
-			if (objectOutputStream != null) {
+			byte[] progress = content.encodeProgress();
+
+			if (progressStore instanceof ArchiveProgressStore) { // The file is about to be replaced. Next read reopens the new one.
 				try {
-					objectOutputStream.close();
+					content.close();
 				} catch (IOException e) {
 					e.printStackTrace();
-					throw new ReadingException("Error closing object output stream: " + e.getMessage());
+					throw new ReadingException("Error closing ZipFile: " + e.getMessage());
 				}
+
+				isProgressFileInArchive = true;
 			}
 
+			progressStore.save(content.getZipFilePath(), progress);
+			isProgressFileFound = true;
 		}
+	}
 
-		File oldFile = new File(content.getZipFilePath());
+	/**
+	 * Closes the epub file kept open while reading. Reading afterwards is still possible, the file is reopened on demand.
+	 * 
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			if (prefetcher != null) {
+				prefetcher.close();
+			}
 
-		if (oldFile.exists()) {
-			oldFile.delete();
+			if (content != null) {
+				saveLayout();
+				content.close();
+			}
 		}
+	}
 
-		File newFile = new File(newFilePath);
+	/**
+	 * Sets the directory the calculated sections are cached in. Reopening a book with the same options then starts with its sections already calculated, instead of calculating them
+	 * again. Layout is saved by paginate and close. Must be called before setting the content. null disables the cache, which is the default.
+	 * 
+	 * @param layoutCacheDirectory
+	 */
+	public void setLayoutCacheDirectory(File layoutCacheDirectory) {
+		this.layoutCache = layoutCacheDirectory != null ? new LayoutCache(layoutCacheDirectory) : null;
+	}
 
-		if (newFile.exists() && !oldFile.exists()) {
-			newFile.renameTo(new File(content.getZipFilePath()));
-		}
+	/**
+	 * Sets the directory the cover thumbnails are cached in; see {@link #getCoverThumbnail(int, int)}. Thumbnails are kept by the book's content and the size. null disables the cache,
+	 * which is the default.
+	 * 
+	 * @param thumbnailCacheDirectory
+	 */
+	public void setThumbnailCacheDirectory(File thumbnailCacheDirectory) {
+		this.thumbnailCache = thumbnailCacheDirectory != null ? new ThumbnailCache(thumbnailCacheDirectory) : null;
+	}
 
+	/**
+	 * Sets where the progress is saved to and loaded from. Must be called before setting the content. Default is {@link SidecarProgressStore}.
+	 * 
+	 * @param progressStore
+	 */
+	public void setProgressStore(ProgressStore progressStore) {
+		this.progressStore = progressStore;
 	}
 
 	public boolean isSavedProgressFound() {
@@ -218,74 +597,82 @@ public class Reader {
 	}
 
 	public int loadProgress() throws ReadingException {
+		synchronized (lock) {
+			clearPrefetchedSections(); // Toc is replaced.
 
-		if (!isProgressFileFound)
-			throw new ReadingException("No save files are found. Loading progress is unavailable.");
+			if (!isProgressFileFound)
+				throw new ReadingException("No save files are found. Loading progress is unavailable.");
 
-		ZipFile epubFile = null;
-		InputStream saveFileInputStream = null;
-		ObjectInputStream oiStream = null;
+			byte[] progress = null;
 
-		try {
+			if (!(progressStore instanceof ArchiveProgressStore)) {
+				progress = progressStore.load(content.getZipFilePath());
+			}
 
-			try {
-				epubFile = new ZipFile(content.getZipFilePath());
-				ZipEntry zipEntry = epubFile.getEntry(Constants.SAVE_FILE_NAME);
-				saveFileInputStream = epubFile.getInputStream(zipEntry);
+			if (progress == null && isProgressFileInArchive) { // Saved into the epub itself; by the legacy store or by older versions.
+				progress = ArchiveProgressStore.load(content.getEpubFile());
+			}
 
-				oiStream = new ObjectInputStream(saveFileInputStream);
-				Toc toc = (Toc) oiStream.readObject();
+			if (progress == null) {
+				throw new ReadingException("No save files are found. Loading progress is unavailable.");
+			}
 
-				content.setToc(toc);
-				return content.getToc().getLastPageIndex();
+			isLayoutCacheable = false;
 
-			} catch (IOException | ClassNotFoundException e) {
-				e.printStackTrace();
-				throw new ReadingException("Error initializing ZipFile: " + e.getMessage());
+			if (ProgressCodec.isEncoded(progress)) {
+				content.setToc(ProgressCodec.decode(progress));
+				return content.getLastPageIndex();
 			}
 
-		} finally {
+			// Saved by older versions with java serialization.
+			ObjectInputStream oiStream = null;
+
+			try {
 
-			if (epubFile != null) {
 				try {
-					epubFile.close();
-				} catch (IOException e) {
+					oiStream = new ObjectInputStream(new ByteArrayInputStream(progress));
+					Toc toc = (Toc) oiStream.readObject();
+
+					content.setToc(toc);
+					return content.getLastPageIndex();
+
+				} catch (IOException | ClassNotFoundException e) {
 					e.printStackTrace();
-					throw new ReadingException("Error closing ZipFile: " + e.getMessage());
+					throw new ReadingException("Error reading progress: " + e.getMessage());
 				}
-			}
 
-			if (oiStream != null) {
-				try {
-					oiStream.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-					throw new ReadingException("Error closing object input stream: " + e.getMessage());
+			} finally {
+
+				if (oiStream != null) {
+					try {
+						oiStream.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+						throw new ReadingException("Error closing object input stream: " + e.getMessage());
+					}
 				}
+
 			}
 
 		}
-
 	}
 
 	// Private methods
-	private Content fillContent(String zipFilePath, boolean isFullContent, boolean isLoadingProgress) throws ReadingException {
+	private Content fillContent(String zipFilePath, boolean isLoadingProgress) throws ReadingException {
 
 		if (zipFilePath == null) {
 			throw new ReadingException("Epub file path is null.");
 		}
 
-		this.content = new Content();
+		releaseContent();
+
+		this.content = new Content(optionals);
 		this.content.setZipFilePath(zipFilePath);
 
-		ZipFile epubFile = null;
+		boolean isContentFilled = false;
+
 		try {
-			try {
-				epubFile = new ZipFile(zipFilePath);
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw new ReadingException("Error initializing ZipFile: " + e.getMessage());
-			}
+			ZipFile epubFile = content.getEpubFile();
 
 			Enumeration<? extends ZipEntry> files = epubFile.entries();
 
@@ -298,40 +685,30 @@ public class Reader {
 						content.addEntryName(entryName);
 
 						if (entryName.equals(Constants.SAVE_FILE_NAME)) {
-							isProgressFileFound = true;
+							isProgressFileInArchive = true;
 						}
 					}
 				}
 			}
 
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			factory.setNamespaceAware(false);
-			factory.setValidating(false);
-			try {
-				factory.setFeature("http://xml.org/sax/features/namespaces", false);
-				factory.setFeature("http://xml.org/sax/features/validation", false);
-				factory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
-				factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-			} catch (ParserConfigurationException e) {
-				e.printStackTrace();
-				// throw new ReadingException("Error initializing DocumentBuilderFactory: " + e.getMessage());
+			isProgressFileFound = isProgressFileInArchive || (!(progressStore instanceof ArchiveProgressStore) && progressStore.contains(zipFilePath));
+
+			if (layoutCache != null) {
+				content.setContentDigest(LayoutCache.getContentDigest(epubFile));
+				isLayoutCacheable = true;
 			}
 
-			DocumentBuilder docBuilder;
+			// Toc is parsed unless it's going to be loaded from the progress, or it's loaded from the layout cache.
+			boolean isParsingToc = (!isLoadingProgress || !isProgressFileFound) && !loadLayout();
 
-			try {
-				docBuilder = factory.newDocumentBuilder();
-			} catch (ParserConfigurationException e) {
-				e.printStackTrace();
-				throw new ReadingException("DocumentBuilder cannot be created: " + e.getMessage());
-			}
+			content.getEntryIndex(); // Section reads look up their files by name. Index them once here instead of scanning per lookup.
 
 			boolean isContainerXmlFound = false;
 			boolean isTocXmlFound = false;
 
 			for (int i = 0; i < content.getEntryNames().size(); i++) {
 
-				if (isContainerXmlFound && (isTocXmlFound || !isFullContent)) {
+				if (isContainerXmlFound && (isTocXmlFound || !isParsingToc)) {
 					break;
 				}
 
@@ -342,31 +719,14 @@ public class Reader {
 
 					ZipEntry container = epubFile.getEntry(currentEntryName);
 
-					InputStream inputStream;
-					try {
-						inputStream = epubFile.getInputStream(container);
-					} catch (IOException e) {
-						e.printStackTrace();
-						throw new ReadingException("IOException while reading " + Constants.FILE_NAME_CONTAINER_XML + " file: " + e.getMessage());
-					}
-
-					Document document = getDocument(docBuilder, inputStream, Constants.FILE_NAME_CONTAINER_XML);
-					parseContainerXml(docBuilder, document, epubFile);
-				} else if ((!isLoadingProgress || !isProgressFileFound) && isFullContent && currentEntryName.contains(Constants.EXTENSION_NCX)) {
+					parseXmlFile(epubFile, container, content.getContainer(), Constants.FILE_NAME_CONTAINER_XML);
+					parseOpfFile(epubFile);
+				} else if (isParsingToc && currentEntryName.contains(Constants.EXTENSION_NCX)) {
 					isTocXmlFound = true;
 
 					ZipEntry toc = epubFile.getEntry(currentEntryName);
 
-					InputStream inputStream;
-					try {
-						inputStream = epubFile.getInputStream(toc);
-					} catch (IOException e) {
-						e.printStackTrace();
-						throw new ReadingException("IOException while reading " + Constants.EXTENSION_NCX + " file: " + e.getMessage());
-					}
-
-					Document document = getDocument(docBuilder, inputStream, Constants.EXTENSION_NCX);
-					parseTocFile(document, content.getToc());
+					parseXmlFile(epubFile, toc, content.getToc(), Constants.EXTENSION_NCX);
 				}
 			}
 
@@ -374,24 +734,81 @@ public class Reader {
 				throw new ReadingException("container.xml not found.");
 			}
 
-			if (!isTocXmlFound && isFullContent && (!isLoadingProgress || !isProgressFileFound)) {
+			if (!isTocXmlFound && isParsingToc) {
 				throw new ReadingException("toc.ncx not found.");
 			}
 
-			if (isFullContent && (!isLoadingProgress || !isProgressFileFound)) {
+			if (isParsingToc) {
 				mergeTocElements();
 			}
 
 			// Debug
 			// content.print();
 
+			isContentFilled = true;
 			return content;
 
 		} finally {
-			if (epubFile != null) {
+			if (!isContentFilled) { // Keep the archive open only for successfully parsed books.
 				try {
+					content.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+					throw new ReadingException("Error closing ZipFile: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	// Reads only container.xml and the opf file up to the metadata, or up to the manifest if there is a cover. Both are looked up in the zip directory; entries aren't listed.
+	private Content fillInfoContent(String zipFilePath) throws ReadingException {
+
+		if (zipFilePath == null) {
+			throw new ReadingException("Epub file path is null.");
+		}
+
+		releaseContent();
+
+		this.content = new Content(optionals);
+		this.content.setZipFilePath(zipFilePath);
 
-					epubFile.close();
+		boolean isContentFilled = false;
+
+		try {
+			ZipFile epubFile = content.getEpubFile();
+
+			isProgressFileInArchive = epubFile.getEntry(Constants.SAVE_FILE_NAME) != null;
+			isProgressFileFound = isProgressFileInArchive || (!(progressStore instanceof ArchiveProgressStore) && progressStore.contains(zipFilePath));
+
+			ZipEntry container = epubFile.getEntry(Constants.FILE_PATH_CONTAINER_XML);
+
+			if (container == null) { // Not where it should be. Searched by name, as the full content does.
+				content.listEntryNames();
+
+				for (String entryName : content.getEntryNames()) {
+					if (entryName.contains(Constants.FILE_NAME_CONTAINER_XML)) {
+						container = epubFile.getEntry(entryName);
+						break;
+					}
+				}
+
+				if (container == null) {
+					throw new ReadingException("container.xml not found.");
+				}
+			}
+
+			parseXmlFile(epubFile, container, content.getContainer(), Constants.FILE_NAME_CONTAINER_XML);
+
+			content.getPackage().setInfoOnly(true);
+			parseOpfFile(epubFile);
+
+			isContentFilled = true;
+			return content;
+
+		} finally {
+			if (!isContentFilled) {
+				try {
+					content.close();
 				} catch (IOException e) {
 					e.printStackTrace();
 					throw new ReadingException("Error closing ZipFile: " + e.getMessage());
@@ -400,16 +817,125 @@ public class Reader {
 		}
 	}
 
-	private void parseContainerXml(DocumentBuilder docBuilder, Document document, ZipFile epubFile) throws ReadingException {
-		if (document.hasChildNodes()) {
-			isFoundNeeded = false;
-			traverseDocumentNodesAndFillContent(document.getChildNodes(), content.getContainer());
+	// Reader is being reused for another book. Release the previous one. Called holding the lock, so a prefetch or async read doesn't see the content while it's replaced.
+	private void releaseContent() {
+
+		clearPrefetchedSections();
+
+		if (this.content != null) {
+			try {
+				this.content.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		isProgressFileFound = false;
+		isProgressFileInArchive = false;
+		isLayoutCacheable = false;
+		savedLayoutPeakPage = 0;
+	}
+
+	Content getContent() {
+		return content;
+	}
+
+	private void clearPrefetchedSections() {
+		synchronized (lock) {
+			if (prefetcher != null) {
+				prefetcher.clear();
+			}
+		}
+	}
+
+	// Replaces the toc with the cached layout of the book, if there is one. Returns false if the sections are to be calculated.
+	private boolean loadLayout() {
+
+		if (layoutCache == null || !isLayoutCacheable) {
+			return false;
 		}
 
+		String layoutKey;
+		byte[] layout;
+
+		try {
+			layoutKey = getLayoutKey();
+			layout = layoutCache.load(layoutKey);
+		} catch (ReadingException e) { // Unreadable; calculated as if it's not cached.
+			e.printStackTrace();
+			return false;
+		}
+
+		if (layout == null) {
+			return false;
+		}
+
+		try {
+			Toc toc = ProgressCodec.decode(layout);
+
+			List<NavPoint> navPoints = toc.getNavMap().getNavPoints();
+
+			if (navPoints == null) {
+				return false;
+			}
+
+			// Sections are calculated in order; the calculated ones are at the beginning.
+			int peakPage = 0;
+
+			while (peakPage < navPoints.size() && navPoints.get(peakPage).isCalculated()) {
+				peakPage++;
+			}
+
+			content.setLayout(toc, peakPage);
+			savedLayoutPeakPage = peakPage;
+
+			return true;
+		} catch (ReadingException | RuntimeException e) { // Broken layout files are deleted; sections are calculated and saved again.
+			e.printStackTrace();
+			layoutCache.delete(layoutKey);
+			return false;
+		}
+	}
+
+	// Saves the calculated sections to the layout cache, if there are more than the cached ones. Failing to save doesn't stop reading.
+	private void saveLayout() {
+
+		int peakPage = content.getPeakPage(); // May be calculated further meanwhile by another reader of the layout; saved again then.
+
+		if (layoutCache == null || !isLayoutCacheable || peakPage <= savedLayoutPeakPage) {
+			return;
+		}
+
+		try {
+			layoutCache.save(getLayoutKey(), content.encodeLayout());
+			savedLayoutPeakPage = peakPage;
+		} catch (ReadingException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// Set while filling the content only if the layout cache is used; computed here for the others.
+	private String getContentDigest() throws ReadingException {
+
+		if (content.getContentDigest() == null) {
+			content.setContentDigest(content.getBook() != null ? content.getBook().getContentDigest() : LayoutCache.getContentDigest(content.getEpubFile()));
+		}
+
+		return content.getContentDigest();
+	}
+
+	private String getLayoutKey() throws ReadingException {
+		return LayoutCache.getKey(content.getContentDigest(), optionals.maxContentPerSection, optionals.cssStatus, optionals.isOmittingTitleTag);
+	}
+
+	private void parseOpfFile(ZipFile epubFile) throws ReadingException {
+
 		String opfFilePath = content.getContainer().getFullPathValue();
 		ZipEntry opfFileEntry = epubFile.getEntry(opfFilePath);
 
 		if (opfFileEntry == null) {
+			content.listEntryNames();
+
 			for (String entryName : content.getEntryNames()) {
 				if (entryName.contains(Constants.EXTENSION_OPF)) {
 					opfFileEntry = epubFile.getEntry(entryName);
@@ -418,30 +944,128 @@ public class Reader {
 			}
 		}
 
-		InputStream opfFileInputStream;
+		parseXmlFile(epubFile, opfFileEntry, content.getPackage(), Constants.EXTENSION_OPF);
+	}
+
+	// Streams the file into the findings. If streaming fails, parses it again into a DOM with clean findings.
+	private void parseXmlFile(ZipFile epubFile, ZipEntry zipEntry, BaseFindings findings, String fileName) throws ReadingException {
+
+		if (streamXmlFile(epubFile, zipEntry, findings, fileName)) {
+			return;
+		}
+
+		if (findings instanceof Container) {
+			findings = new Container();
+			content.setContainer((Container) findings);
+		} else if (findings instanceof Package) {
+			findings = new Package();
+			content.setPackage((Package) findings);
+		} else {
+			findings = new Toc();
+			content.setToc((Toc) findings);
+		}
+
+		Document document = getDocument(getDocumentBuilder(), getInputStream(epubFile, zipEntry, fileName), fileName);
+
+		if (document.hasChildNodes()) {
+			isFoundNeeded = false;
+			traverseDocumentNodesAndFillContent(document.getChildNodes(), findings);
+		}
+	}
+
+	private boolean streamXmlFile(ZipFile epubFile, ZipEntry zipEntry, BaseFindings findings, String fileName) throws ReadingException {
+
+		SAXParser saxParser = getSaxParser();
+
+		if (saxParser == null) {
+			return false;
+		}
+
+		InputStream inputStream = getInputStream(epubFile, zipEntry, fileName);
+
 		try {
-			opfFileInputStream = epubFile.getInputStream(opfFileEntry);
+			saxParser.parse(inputStream, new FindingsHandler(findings));
+			return true;
+		} catch (FindingsHandler.FindingsCompletedException e) { // Rest of the file is not needed.
+			return true;
+		} catch (SAXException e) {
+			if (e.getException() instanceof ReadingException) {
+				throw (ReadingException) e.getException();
+			}
+
+			e.printStackTrace();
+			return false;
 		} catch (IOException e) {
 			e.printStackTrace();
-			throw new ReadingException("IO error while reading " + Constants.EXTENSION_OPF + " inputstream: " + e.getMessage());
+			return false;
+		} finally {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
+	}
 
-		Document packageDocument = getDocument(docBuilder, opfFileInputStream, Constants.EXTENSION_OPF);
-		parseOpfFile(packageDocument, content.getPackage());
+	private InputStream getInputStream(ZipFile epubFile, ZipEntry zipEntry, String fileName) throws ReadingException {
+		try {
+			return epubFile.getInputStream(zipEntry);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ReadingException("IOException while reading " + fileName + " file: " + e.getMessage());
+		}
 	}
 
-	private void parseOpfFile(Document document, Package pckage) throws ReadingException {
-		if (document.hasChildNodes()) {
-			isFoundNeeded = false;
-			traverseDocumentNodesAndFillContent(document.getChildNodes(), pckage);
+	private SAXParser getSaxParser() {
+
+		if (saxParser == null) {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(false);
+			factory.setValidating(false);
+			try {
+				factory.setFeature("http://xml.org/sax/features/namespaces", false);
+				factory.setFeature("http://xml.org/sax/features/validation", false);
+				factory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
+				factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			} catch (ParserConfigurationException | SAXException e) {
+				e.printStackTrace();
+			}
+
+			try {
+				saxParser = factory.newSAXParser();
+			} catch (ParserConfigurationException | SAXException e) {
+				e.printStackTrace(); // DOM parsing will be used instead.
+			}
 		}
+
+		return saxParser;
 	}
 
-	private void parseTocFile(Document document, Toc toc) throws ReadingException {
-		if (document.hasChildNodes()) {
-			isFoundNeeded = false;
-			traverseDocumentNodesAndFillContent(document.getChildNodes(), toc);
+	private DocumentBuilder getDocumentBuilder() throws ReadingException {
+
+		if (docBuilder == null) {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(false);
+			factory.setValidating(false);
+			try {
+				factory.setFeature("http://xml.org/sax/features/namespaces", false);
+				factory.setFeature("http://xml.org/sax/features/validation", false);
+				factory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
+				factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			} catch (ParserConfigurationException e) {
+				e.printStackTrace();
+				// throw new ReadingException("Error initializing DocumentBuilderFactory: " + e.getMessage());
+			}
+
+			try {
+				docBuilder = factory.newDocumentBuilder();
+			} catch (ParserConfigurationException e) {
+				e.printStackTrace();
+				throw new ReadingException("DocumentBuilder cannot be created: " + e.getMessage());
+			}
 		}
+
+		return docBuilder;
 	}
 
 	private Document getDocument(DocumentBuilder docBuilder, InputStream inputStream, String fileName) throws ReadingException {
@@ -479,10 +1103,52 @@ public class Reader {
 
 	private void mergeTocElements() throws ReadingException {
 
-		List<NavPoint> currentNavPoints = new ArrayList<>(content.getToc().getNavMap().getNavPoints());
+		List<NavPoint> currentNavPoints = content.getToc().getNavMap().getNavPoints();
+
+		// Positions of the current navPoints by their content; and by their content before each anchor, e.g. chapter1.xhtml%23section2 -> chapter1.xhtml
+		Map<String, Integer> navPointIndicesBySrc = new HashMap<>();
+		Map<String, Integer> anchoredNavPointIndicesBySrc = new HashMap<>();
+
+		for (int j = 0; j < currentNavPoints.size(); j++) {
+			String contentSrc = currentNavPoints.get(j).getContentSrc();
+
+			if (!navPointIndicesBySrc.containsKey(contentSrc)) {
+				navPointIndicesBySrc.put(contentSrc, j);
+			}
+
+			int anchorIndex = contentSrc.indexOf("%23");
+
+			while (anchorIndex != -1) {
+				String unanchoredSrc = contentSrc.substring(0, anchorIndex);
+
+				if (!anchoredNavPointIndicesBySrc.containsKey(unanchoredSrc)) {
+					anchoredNavPointIndicesBySrc.put(unanchoredSrc, j);
+				}
+
+				anchorIndex = contentSrc.indexOf("%23", anchorIndex + 1);
+			}
+		}
+
+		Map<String, List<XmlItem>> manifestsById = new HashMap<>();
+
+		for (XmlItem manifest : content.getPackage().getManifest().getXmlItemList()) {
+			String manifestElementId = manifest.getAttributes().get("id");
+
+			List<XmlItem> manifests = manifestsById.get(manifestElementId);
+
+			if (manifests == null) {
+				manifests = new ArrayList<>(1);
+				manifestsById.put(manifestElementId, manifests);
+			}
+
+			manifests.add(manifest);
+		}
+
+		List<NavPoint> spineNavPoints = new ArrayList<>();
+		List<Integer> spineNavPointIndices = new ArrayList<>(); // Current navPoint each spine navPoint is inserted before.
 
 		int navPointIndex = 0; // Holds the last duplicate content position, when the new content found insertion is done from that position.
-		int insertedNavPointCount = 0;
+		boolean isInOrder = true;
 
 		for (XmlItem spine : content.getPackage().getSpine().getXmlItemList()) {
 
@@ -490,46 +1156,81 @@ public class Reader {
 
 			String idRef = spineAttributes.get("idref");
 
-			for (XmlItem manifest : content.getPackage().getManifest().getXmlItemList()) {
+			List<XmlItem> manifests = manifestsById.get(idRef);
 
-				Map<String, String> manifestAttributes = manifest.getAttributes();
+			if (manifests == null) {
+				continue;
+			}
 
-				String manifestElementId = manifestAttributes.get("id");
+			for (XmlItem manifest : manifests) {
 
-				if (idRef.equals(manifestElementId)) {
+				Map<String, String> manifestAttributes = manifest.getAttributes();
 
-					NavPoint navPoint = new NavPoint();
-					// navPoint.setPlayOrder(currentNavPoints.size() + spineNavPoints.size() + 1); // Is playOrder needed? I think not because we've already sorted the navPoints with playOrder before
-					// merging.
-					navPoint.setContentSrc(ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(manifestAttributes.get("href"), Constants.SLASH)));
+				NavPoint navPoint = new NavPoint();
+				// navPoint.setPlayOrder(currentNavPoints.size() + spineNavPoints.size() + 1); // Is playOrder needed? I think not because we've already sorted the navPoints with playOrder before
+				// merging.
+				navPoint.setContentSrc(ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(manifestAttributes.get("href"), Constants.SLASH)));
 
-					boolean duplicateContentSrc = false;
-					boolean isAnchoredFound = false;
+				Integer duplicateIndex = navPointIndicesBySrc.get(navPoint.getContentSrc());
 
-					for (int j = 0; j < currentNavPoints.size(); j++) {
+				if (duplicateIndex != null) {
+					navPointIndex = duplicateIndex;
+					continue;
+				}
 
-						NavPoint navPointItem = currentNavPoints.get(j);
+				// First navPoint anchored into this content, or the one this anchored content belongs to.
+				Integer anchoredIndex = anchoredNavPointIndicesBySrc.get(navPoint.getContentSrc());
 
-						if (navPoint.getContentSrc().equals(navPointItem.getContentSrc())) {
-							duplicateContentSrc = true;
-							navPointIndex = j;
-							break;
-						} else if (!isAnchoredFound && navPoint.getContentSrc().startsWith(navPointItem.getContentSrc()) && navPoint.getContentSrc().replace(navPointItem.getContentSrc(), "").startsWith("%23")) {
-							isAnchoredFound = true;
-							navPointIndex = j;
-						} else if (!isAnchoredFound && navPointItem.getContentSrc().startsWith(navPoint.getContentSrc()) && navPointItem.getContentSrc().replace(navPoint.getContentSrc(), "").startsWith("%23")) {
-							isAnchoredFound = true;
-							navPointIndex = j;
-						}
+				int anchorIndex = navPoint.getContentSrc().indexOf("%23");
 
-					}
+				while (anchorIndex != -1) {
+					Integer unanchoredIndex = navPointIndicesBySrc.get(navPoint.getContentSrc().substring(0, anchorIndex));
 
-					if (!duplicateContentSrc) {
-						content.getToc().getNavMap().getNavPoints().add(navPointIndex + insertedNavPointCount++, navPoint);
+					if (unanchoredIndex != null && (anchoredIndex == null || unanchoredIndex < anchoredIndex)) {
+						anchoredIndex = unanchoredIndex;
 					}
 
+					anchorIndex = navPoint.getContentSrc().indexOf("%23", anchorIndex + 1);
+				}
+
+				if (anchoredIndex != null) {
+					navPointIndex = anchoredIndex;
+				}
+
+				if (!spineNavPointIndices.isEmpty() && spineNavPointIndices.get(spineNavPointIndices.size() - 1) > navPointIndex) {
+					isInOrder = false;
 				}
 
+				spineNavPoints.add(navPoint);
+				spineNavPointIndices.add(navPointIndex);
+			}
+		}
+
+		if (spineNavPoints.isEmpty()) {
+			return;
+		}
+
+		if (isInOrder) { // Each spine navPoint goes right before the current navPoint it belongs to. Merging in one pass.
+			List<NavPoint> mergedNavPoints = new ArrayList<>(currentNavPoints.size() + spineNavPoints.size());
+
+			int spineIndex = 0;
+
+			for (int j = 0; j < currentNavPoints.size(); j++) {
+				while (spineIndex < spineNavPoints.size() && spineNavPointIndices.get(spineIndex) == j) {
+					mergedNavPoints.add(spineNavPoints.get(spineIndex++));
+				}
+
+				mergedNavPoints.add(currentNavPoints.get(j));
+			}
+
+			while (spineIndex < spineNavPoints.size()) { // Only when there were no navPoints at all.
+				mergedNavPoints.add(spineNavPoints.get(spineIndex++));
+			}
+
+			content.getToc().getNavMap().setNavPoints(mergedNavPoints);
+		} else { // Malformed order. Insert one by one to keep the same positions as before.
+			for (int i = 0; i < spineNavPoints.size(); i++) {
+				currentNavPoints.add(spineNavPointIndices.get(i) + i, spineNavPoints.get(i));
 			}
 		}
 
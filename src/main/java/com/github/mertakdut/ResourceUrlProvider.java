@@ -0,0 +1,17 @@
+package com.github.mertakdut;
+
+/**
+ * Gives the urls the images of the sections are referenced by, instead of inlining them into the sections as base64; see
+ * {@link Reader#setResourceUrlProvider(ResourceUrlProvider)}. The app resolves the urls, e.g. by serving {@link Reader#transferResource(String, java.nio.channels.WritableByteChannel)}
+ * with the entry name.
+ */
+public interface ResourceUrlProvider {
+
+	/**
+	 * @param entryName
+	 *            entry of the image in the epub file, e.g. OEBPS/images/figure1.png.
+	 * @return url to put into the img tag's src, e.g. epub://bookId/OEBPS/images/figure1.png. Same image should get the same url, so that it's cached by the client.
+	 */
+	String getResourceUrl(String entryName);
+
+}
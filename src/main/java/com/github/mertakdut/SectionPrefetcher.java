@@ -0,0 +1,176 @@
+package com.github.mertakdut;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mertakdut.exception.OutOfPagesException;
+import com.github.mertakdut.exception.ReadingException;
+
+/**
+ * Prepares the sections around the last read one in the background, so turning the page is served from a small cache.
+ *
+ * Content isn't thread safe; calculating a section may insert or remove the navPoints after it. Sections are prepared one at a time, in order, each under the reader's lock. A
+ * prepared section is only served while the same navPoint is at its index.
+ */
+class SectionPrefetcher {
+
+	private final Object lock;
+
+	private final int nextSectionCount;
+	private final boolean isIncludingPreviousSection;
+
+	private ExecutorService executor;
+	private final boolean isOwningExecutor; // Shut down on close if created here.
+
+	private Content content;
+	private Map<Integer, Pair<NavPoint, BookSection>> sections;
+
+	private Future<?> task;
+	private volatile int generation; // Increased by every schedule and cancel. Running task stops once it's outdated.
+
+	SectionPrefetcher(Object lock, int nextSectionCount, boolean isIncludingPreviousSection, ExecutorService executor) {
+		this.lock = lock;
+		this.nextSectionCount = nextSectionCount;
+		this.isIncludingPreviousSection = isIncludingPreviousSection;
+		this.executor = executor;
+		this.isOwningExecutor = executor == null;
+
+		// Least recently used sections are evicted; the ones around the read one are kept.
+		final int maxSize = nextSectionCount + (isIncludingPreviousSection ? 2 : 1);
+
+		this.sections = new LinkedHashMap<Integer, Pair<NavPoint, BookSection>>(16, 0.75f, true) {
+			private static final long serialVersionUID = -1794470627313298853L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Pair<NavPoint, BookSection>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	// Must be called under the lock. Returns null if the section isn't prepared, or the navPoints are changed since.
+	BookSection get(Content content, int index) {
+
+		if (content != this.content) {
+			return null;
+		}
+
+		Pair<NavPoint, BookSection> section = sections.get(index);
+
+		if (section != null && section.getFirst() == content.findNavPoint(index)) {
+			return section.getSecond();
+		}
+
+		return null;
+	}
+
+	// Must be called under the lock. Cancels the previous preparation and starts preparing the sections around the index.
+	void schedule(final Content content, final int index) {
+
+		cancel();
+
+		if (content != this.content) {
+			this.content = content;
+			sections.clear();
+		}
+
+		final int taskGeneration = generation;
+
+		task = getExecutor().submit(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 1; i <= nextSectionCount; i++) {
+					if (!prepare(content, index + i, taskGeneration)) {
+						return;
+					}
+				}
+
+				if (isIncludingPreviousSection && index > 0) {
+					prepare(content, index - 1, taskGeneration);
+				}
+			}
+		});
+	}
+
+	// Must be called under the lock.
+	void cancel() {
+
+		generation++;
+
+		if (task != null) {
+			task.cancel(false); // The running one stops before its next section; interrupting may close the zip channel it reads from.
+			task = null;
+		}
+	}
+
+	// Must be called under the lock.
+	void clear() {
+		cancel();
+		sections.clear();
+	}
+
+	// Must be called under the lock.
+	void close() {
+
+		clear();
+		content = null;
+
+		if (isOwningExecutor && executor != null) {
+			executor.shutdown();
+			executor = null; // Created again if the reader is used after closing.
+		}
+	}
+
+	// Returns false if the following sections shouldn't be prepared.
+	private boolean prepare(Content content, int index, int taskGeneration) {
+
+		synchronized (lock) {
+
+			if (taskGeneration != generation) { // Reader moved on.
+				return false;
+			}
+
+			if (get(content, index) != null) {
+				return true;
+			}
+
+			try {
+				BookSection bookSection = content.prefetchBookSection(index);
+
+				// Taken after calculating; a broken anchor's navPoint is replaced by the next one.
+				sections.put(index, new Pair<>(content.findNavPoint(index), bookSection));
+
+				return true;
+			} catch (OutOfPagesException e) {
+				return false;
+			} catch (ReadingException e) {
+				e.printStackTrace(); // Thrown again when the section is read.
+				return false;
+			}
+		}
+	}
+
+	private ExecutorService getExecutor() {
+
+		if (executor == null) {
+			// Single thread; sections are prepared in order anyway. Only the latest task waits in the queue.
+			executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "EpubParser-Prefetcher");
+					thread.setDaemon(true);
+					return thread;
+				}
+			}, new ThreadPoolExecutor.DiscardOldestPolicy());
+		}
+
+		return executor;
+	}
+
+}
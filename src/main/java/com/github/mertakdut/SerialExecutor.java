@@ -0,0 +1,57 @@
+package com.github.mertakdut;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+// Runs the tasks one at a time, in the order they are submitted, each on the executor it is submitted with. Waiting tasks don't hold a thread of the executor.
+class SerialExecutor {
+
+	private final Queue<Pair<Runnable, Executor>> tasks = new ArrayDeque<>();
+	private Runnable active;
+
+	synchronized void execute(Runnable task, Executor executor) {
+
+		tasks.add(new Pair<>(task, executor));
+
+		if (active == null) {
+			scheduleNext();
+		}
+	}
+
+	private synchronized void scheduleNext() {
+
+		Pair<Runnable, Executor> next;
+
+		while ((next = tasks.poll()) != null) {
+			final Runnable task = next.getFirst();
+
+			active = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						scheduleNext();
+					}
+				}
+			};
+
+			try {
+				next.getSecond().execute(active);
+				return;
+			} catch (RejectedExecutionException e) { // e.g. executor is shut down. Following tasks are tried on their own executors.
+				e.printStackTrace();
+
+				if (task instanceof Future) { // Never runs; don't leave its caller waiting.
+					((Future<?>) task).cancel(false);
+				}
+			}
+		}
+
+		active = null;
+	}
+
+}
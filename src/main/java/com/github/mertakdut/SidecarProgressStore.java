@@ -0,0 +1,15 @@
+package com.github.mertakdut;
+
+import java.io.File;
+
+/**
+ * Saves the progress into a file next to the book, e.g. book.epub.epubparser_progress.ser. Epub file itself is never modified.
+ */
+public class SidecarProgressStore extends FileProgressStore {
+
+	@Override
+	File getProgressFile(String bookFilePath) {
+		return new File(bookFilePath + Constants.DOT + Constants.SAVE_FILE_NAME);
+	}
+
+}
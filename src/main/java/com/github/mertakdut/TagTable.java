@@ -0,0 +1,529 @@
+package com.github.mertakdut;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tag positions of an entry, sorted by their opening positions. Kept in columns instead of Tag objects; a chapter may have hundreds of thousands of tags.
+ *
+ * Positions are the indices right after '<'. Empty tags have the same opening and closing positions. Opening tags which are never closed, like <br>, are not kept.
+ *
+ * Rows are also kept in their closing order, and a max tree of closing positions is built on demand; so the tags of a page are found without iterating the tags of the previous
+ * pages.
+ *
+ * Visible text is everything out of the tags' markups. Markups are kept in document order with the total markup length before each; page ends are found by binary search on them.
+ */
+class TagTable {
+
+	private int size;
+
+	private int[] openingPositions;
+	private int[] closingPositions;
+	private int[] nameIds;
+	private int[] fullNameLengths;
+	private BitSet omittedTags;
+
+	private String[] names;
+
+	private int[] closingOrder; // Rows sorted by their closing positions.
+	private int[] maxClosingPositions; // Segment tree over the rows; each node keeps the max closing position below it.
+
+	private int[] markupStarts; // Index of '<'.
+	private int[] markupEnds; // Index after '>'.
+	private int[] hiddenLengths; // Total length of the markups before each one.
+
+	private TagTable() {
+	}
+
+	// The body isn't kept; tables of a shared book outlive the cached entry contents. Full tag names are read from the body given back.
+	TagTable(String htmlBody) {
+		int capacity = 16;
+
+		openingPositions = new int[capacity];
+		closingPositions = new int[capacity];
+		nameIds = new int[capacity];
+		fullNameLengths = new int[capacity];
+		omittedTags = new BitSet();
+		closingOrder = new int[capacity];
+
+		int closedTagCount = 0;
+
+		Map<String, Integer> nameIdsByName = new HashMap<>();
+
+		int[] openedTags = new int[capacity]; // Indices of the tags waiting for their closing tags.
+		int openedTagCount = 0;
+
+		TagTokenizer tokenizer = new TagTokenizer(htmlBody);
+
+		// Tags are added in the order they are opened; so they are already sorted. Tags never closed are left with -1 and removed at the end.
+		int type;
+		while ((type = tokenizer.next()) != TagTokenizer.END) {
+
+			int position = tokenizer.getTagStart() + 1;
+
+			if (type == TagTokenizer.CLOSING_TAG) { // Match it with the last open tag with the same name.
+				int nameStart = tokenizer.getNameStart();
+				int nameLength = tokenizer.getNameEnd() - nameStart;
+
+				for (int i = openedTagCount - 1; i >= 0; i--) {
+					String openedTagName = names[nameIds[openedTags[i]]];
+
+					if (openedTagName.length() == nameLength && htmlBody.regionMatches(nameStart, openedTagName, 0, nameLength)) { // Found the last open tag with the same name.
+						closingPositions[openedTags[i]] = position;
+
+						if (closedTagCount == closingOrder.length) {
+							closingOrder = Arrays.copyOf(closingOrder, closedTagCount * 2);
+						}
+
+						closingOrder[closedTagCount++] = openedTags[i];
+
+						System.arraycopy(openedTags, i + 1, openedTags, i, openedTagCount - i - 1);
+						openedTagCount--;
+						break;
+					}
+				}
+			} else {
+				if (size == openingPositions.length) {
+					grow();
+				}
+
+				String name = htmlBody.substring(tokenizer.getNameStart(), tokenizer.getNameEnd());
+				Integer nameId = nameIdsByName.get(name);
+
+				if (nameId == null) {
+					nameId = nameIdsByName.size();
+					nameIdsByName.put(name, nameId);
+
+					if (names == null) {
+						names = new String[capacity];
+					} else if (nameId == names.length) {
+						names = Arrays.copyOf(names, nameId * 2);
+					}
+
+					names[nameId] = name;
+				}
+
+				openingPositions[size] = position;
+				nameIds[size] = nameId;
+				fullNameLengths[size] = tokenizer.getFullNameEnd(type) - tokenizer.getFullNameStart(type);
+
+				if (type == TagTokenizer.OPENING_TAG) {
+					closingPositions[size] = -1;
+
+					if (openedTagCount == openedTags.length) {
+						openedTags = Arrays.copyOf(openedTags, openedTagCount * 2);
+					}
+
+					openedTags[openedTagCount++] = size;
+				} else { // Empty tag.
+					closingPositions[size] = position;
+
+					if (closedTagCount == closingOrder.length) {
+						closingOrder = Arrays.copyOf(closingOrder, closedTagCount * 2);
+					}
+
+					closingOrder[closedTagCount++] = size;
+				}
+
+				size++;
+			}
+		}
+
+		removeNotClosedTags();
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getOpeningPosition(int index) {
+		return openingPositions[index];
+	}
+
+	int getClosingPosition(int index) {
+		return closingPositions[index];
+	}
+
+	boolean isEmptyTag(int index) {
+		return openingPositions[index] == closingPositions[index];
+	}
+
+	String getTagName(int index) {
+		return names[nameIds[index]];
+	}
+
+	// Between the brackets, e.g. 'p class="x"'; read from the body the table is made of.
+	String getFullTagName(int index, String htmlBody) {
+		return htmlBody.substring(openingPositions[index], openingPositions[index] + fullNameLengths[index]);
+	}
+
+	int getFullTagNameLength(int index) {
+		return fullNameLengths[index];
+	}
+
+	boolean isOmitted(int index) {
+		return omittedTags.get(index);
+	}
+
+	void setOmitted(int index) {
+		omittedTags.set(index);
+	}
+
+	// Rows of the tags opened in [start, end), in the opening order. Empty tags are included.
+	int[] getTagsOpenedIn(int start, int end) {
+
+		int from = findFirstOpened(start);
+		int to = Math.max(from, findFirstOpened(end));
+
+		int[] rows = new int[to - from];
+
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = from + i;
+		}
+
+		return rows;
+	}
+
+	// Rows of the tags closed in [start, end), in the closing order. Empty tags are included.
+	int[] getTagsClosedIn(int start, int end) {
+
+		int from = findFirstClosed(start);
+		int to = Math.max(from, findFirstClosed(end));
+
+		return Arrays.copyOfRange(closingOrder, from, to);
+	}
+
+	// Rows of the tags either opened or closed in [start, end), in the opening order.
+	int[] getTagsOpenedOrClosedIn(int start, int end) {
+
+		int[] openedRows = getTagsOpenedIn(start, end);
+		int[] closedRows = getTagsClosedIn(start, end);
+
+		int[] rows = new int[openedRows.length + closedRows.length];
+		System.arraycopy(openedRows, 0, rows, 0, openedRows.length);
+		System.arraycopy(closedRows, 0, rows, openedRows.length, closedRows.length);
+
+		Arrays.sort(rows);
+
+		int count = 0;
+
+		for (int i = 0; i < rows.length; i++) {
+			if (count == 0 || rows[count - 1] != rows[i]) {
+				rows[count++] = rows[i];
+			}
+		}
+
+		return Arrays.copyOf(rows, count);
+	}
+
+	// Shares the columns, but has its own omitted marks; for the readers of a shared book. Shared columns must only be read, so the indexes are built first.
+	TagTable copyWithOwnOmittedTags() {
+
+		buildIndexes();
+
+		TagTable copy = new TagTable();
+		copy.size = size;
+		copy.openingPositions = openingPositions;
+		copy.closingPositions = closingPositions;
+		copy.nameIds = nameIds;
+		copy.fullNameLengths = fullNameLengths;
+		copy.omittedTags = new BitSet();
+		copy.names = names;
+		copy.closingOrder = closingOrder;
+		copy.maxClosingPositions = maxClosingPositions;
+		copy.markupStarts = markupStarts;
+		copy.markupEnds = markupEnds;
+		copy.hiddenLengths = hiddenLengths;
+
+		return copy;
+	}
+
+	// Memory held by the columns and the built indexes, in bytes; names are not counted.
+	long getSize() {
+		long intCount = openingPositions.length + closingPositions.length + nameIds.length + fullNameLengths.length + closingOrder.length;
+
+		if (maxClosingPositions != null) {
+			intCount += maxClosingPositions.length;
+		}
+
+		if (markupStarts != null) {
+			intCount += markupStarts.length + markupEnds.length + hiddenLengths.length;
+		}
+
+		return 4L * intCount;
+	}
+
+	// Builds the lazy indexes up front; e.g. while the entry is read ahead on another thread.
+	void buildIndexes() {
+
+		if (maxClosingPositions == null) {
+			buildMaxClosingPositions();
+		}
+
+		if (markupStarts == null) {
+			buildMarkups();
+		}
+	}
+
+	// Rows of the tags opened before and closed after the position, in the opening order.
+	int[] getTagsSpanning(int position) {
+
+		if (maxClosingPositions == null) {
+			buildMaxClosingPositions();
+		}
+
+		int rowEnd = findFirstOpened(position);
+		int leafCount = maxClosingPositions.length / 2;
+
+		// Counted first, then filled.
+		int[] rows = new int[collectSpanningTags(1, 0, leafCount, rowEnd, position, null, 0)];
+		collectSpanningTags(1, 0, leafCount, rowEnd, position, rows, 0);
+
+		return rows;
+	}
+
+	// Count of the visible characters before the position.
+	int getVisibleLength(int position) {
+
+		if (markupStarts == null) {
+			buildMarkups();
+		}
+
+		int markupIndex = findFirstMarkup(position) - 1; // Last markup started before the position.
+
+		if (markupIndex == -1) {
+			return position;
+		}
+
+		return position - hiddenLengths[markupIndex] - Math.min(markupEnds[markupIndex], position) + markupStarts[markupIndex];
+	}
+
+	// The first position with the given count of visible characters before it. May be beyond the html body if there are not that many.
+	int findVisiblePosition(int visibleLength) {
+
+		if (markupStarts == null) {
+			buildMarkups();
+		}
+
+		// First markup with at least visibleLength visible characters before it.
+		int low = 0;
+		int high = markupStarts.length;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (markupStarts[mid] - hiddenLengths[mid] < visibleLength) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		if (low == 0) {
+			return visibleLength;
+		}
+
+		// Somewhere in the text between the previous markup and this one.
+		int previousMarkupEnd = markupEnds[low - 1];
+		int previousVisibleLength = previousMarkupEnd - hiddenLengths[low - 1] - (markupEnds[low - 1] - markupStarts[low - 1]);
+
+		return previousMarkupEnd + visibleLength - previousVisibleLength;
+	}
+
+	// Last row opened before the position, or -1.
+	int findLastOpenedBefore(int position) {
+		return findFirstOpened(position) - 1;
+	}
+
+	// Last row closed before the position, or -1.
+	int findLastClosedBefore(int position) {
+		int index = findFirstClosed(position) - 1;
+		return index == -1 ? -1 : closingOrder[index];
+	}
+
+	// Tags kept in navPoints outlive the pages they are opened in.
+	Tag getTag(int index, String htmlBody) {
+		Tag tag = new Tag();
+		tag.setTagName(getTagName(index));
+		tag.setFullTagName(getFullTagName(index, htmlBody));
+		tag.setOpeningTagStartPosition(openingPositions[index]);
+		tag.setClosingTagStartPosition(closingPositions[index]);
+		tag.setOmitted(isOmitted(index));
+		return tag;
+	}
+
+	private void grow() {
+		int capacity = openingPositions.length * 2;
+
+		openingPositions = Arrays.copyOf(openingPositions, capacity);
+		closingPositions = Arrays.copyOf(closingPositions, capacity);
+		nameIds = Arrays.copyOf(nameIds, capacity);
+		fullNameLengths = Arrays.copyOf(fullNameLengths, capacity);
+	}
+
+	private void removeNotClosedTags() {
+
+		int[] newRows = new int[size];
+		int newSize = 0;
+
+		for (int i = 0; i < size; i++) {
+			if (closingPositions[i] != -1) {
+				openingPositions[newSize] = openingPositions[i];
+				closingPositions[newSize] = closingPositions[i];
+				nameIds[newSize] = nameIds[i];
+				fullNameLengths[newSize] = fullNameLengths[i];
+				newRows[i] = newSize;
+				newSize++;
+			}
+		}
+
+		size = newSize;
+
+		// Only closed tags are in the closing order; all of them are kept.
+		for (int i = 0; i < size; i++) {
+			closingOrder[i] = newRows[closingOrder[i]];
+		}
+	}
+
+	// First row with an opening position not less than the position.
+	private int findFirstOpened(int position) {
+
+		int low = 0;
+		int high = size;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (openingPositions[mid] < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	// First index in the closing order with a closing position not less than the position.
+	private int findFirstClosed(int position) {
+
+		int low = 0;
+		int high = size;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (closingPositions[closingOrder[mid]] < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	// First markup starting at or after the position.
+	private int findFirstMarkup(int position) {
+
+		int low = 0;
+		int high = markupStarts.length;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (markupStarts[mid] < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	// Merges opening and closing markups, both already sorted.
+	private void buildMarkups() {
+
+		int closingMarkupCount = 0;
+
+		for (int i = 0; i < size; i++) {
+			if (!isEmptyTag(i)) {
+				closingMarkupCount++;
+			}
+		}
+
+		int markupCount = size + closingMarkupCount;
+
+		markupStarts = new int[markupCount];
+		markupEnds = new int[markupCount];
+		hiddenLengths = new int[markupCount];
+
+		int row = 0;
+		int closingIndex = 0;
+		int hiddenLength = 0;
+
+		for (int i = 0; i < markupCount; i++) {
+
+			while (closingIndex < size && isEmptyTag(closingOrder[closingIndex])) { // Empty tags are added as opening markups.
+				closingIndex++;
+			}
+
+			int closingRow = closingIndex < size ? closingOrder[closingIndex] : -1;
+
+			if (row < size && (closingRow == -1 || openingPositions[row] < closingPositions[closingRow])) { // <p class="x"> or <br/>
+				markupStarts[i] = openingPositions[row] - 1;
+				markupEnds[i] = openingPositions[row] + fullNameLengths[row] + (isEmptyTag(row) ? 2 : 1);
+				row++;
+			} else { // </p>
+				markupStarts[i] = closingPositions[closingRow] - 1;
+				markupEnds[i] = closingPositions[closingRow] + names[nameIds[closingRow]].length() + 2;
+				closingIndex++;
+			}
+
+			hiddenLengths[i] = hiddenLength;
+			hiddenLength += markupEnds[i] - markupStarts[i];
+		}
+	}
+
+	private void buildMaxClosingPositions() {
+
+		int leafCount = 1;
+		while (leafCount < size) {
+			leafCount <<= 1;
+		}
+
+		maxClosingPositions = new int[leafCount * 2];
+		Arrays.fill(maxClosingPositions, -1);
+
+		System.arraycopy(closingPositions, 0, maxClosingPositions, leafCount, size);
+
+		for (int node = leafCount - 1; node > 0; node--) {
+			maxClosingPositions[node] = Math.max(maxClosingPositions[node * 2], maxClosingPositions[node * 2 + 1]);
+		}
+	}
+
+	// Adds the rows before rowEnd closed after the position; skips the subtrees closed before it. Only counts them if rows is null.
+	private int collectSpanningTags(int node, int nodeStart, int nodeEnd, int rowEnd, int position, int[] rows, int count) {
+
+		if (nodeStart >= rowEnd || maxClosingPositions[node] <= position) {
+			return count;
+		}
+
+		if (nodeEnd - nodeStart == 1) {
+			if (rows != null) {
+				rows[count] = nodeStart;
+			}
+
+			return count + 1;
+		}
+
+		int nodeMiddle = (nodeStart + nodeEnd) >>> 1;
+
+		count = collectSpanningTags(node * 2, nodeStart, nodeMiddle, rowEnd, position, rows, count);
+		return collectSpanningTags(node * 2 + 1, nodeMiddle, nodeEnd, rowEnd, position, rows, count);
+	}
+
+}
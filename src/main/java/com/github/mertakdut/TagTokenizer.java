@@ -0,0 +1,182 @@
+package com.github.mertakdut;
+
+/**
+ * Finds the tags of an html body in a single pass, without building candidate strings or running regexes. Only positions are kept; callers take the substrings they actually need.
+ *
+ * Comments, CDATA sections and processing instructions are skipped. A '>' inside a quoted attribute value doesn't end the tag. A '<' always starts a new tag candidate, dropping the
+ * unfinished one; e.g. '< <p>'.
+ */
+class TagTokenizer {
+
+	static final int END = 0;
+	static final int OPENING_TAG = 1; // <p class="x">
+	static final int CLOSING_TAG = 2; // </p>
+	static final int EMPTY_TAG = 3; // <br/>
+
+	private static final String COMMENT_START = "<!--";
+	private static final String COMMENT_END = "-->";
+	private static final String CDATA_START = "<![CDATA[";
+	private static final String CDATA_END = "]]>";
+	private static final String PROCESSING_INSTRUCTION_START = "<?";
+	private static final String PROCESSING_INSTRUCTION_END = "?>";
+
+	private String html;
+	private int position;
+
+	private int tagStart; // Index of '<'.
+	private int tagEnd; // Index of '>'.
+
+	private int nameStart;
+	private int nameEnd;
+
+	TagTokenizer(String html) {
+		this.html = html;
+	}
+
+	/**
+	 * Moves to the next tag.
+	 *
+	 * @return type of the found tag, or END if there are no tags left.
+	 */
+	int next() {
+
+		int length = html.length();
+
+		int candidateStart = -1;
+		char quote = 0;
+
+		while (position < length) {
+			char c = html.charAt(position);
+
+			if (c == Constants.TAG_OPENING) {
+				int skipTo = getSkipPosition(position);
+
+				if (skipTo != -1) {
+					position = skipTo;
+					candidateStart = -1;
+					quote = 0;
+					continue;
+				}
+
+				candidateStart = position;
+				quote = 0;
+			} else if (candidateStart != -1) {
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == Constants.TAG_CLOSING) {
+					tagStart = candidateStart;
+					tagEnd = position;
+					position++;
+
+					return setName();
+				}
+			}
+
+			position++;
+		}
+
+		return END;
+	}
+
+	int getTagStart() {
+		return tagStart;
+	}
+
+	int getTagEnd() {
+		return tagEnd;
+	}
+
+	int getNameStart() {
+		return nameStart;
+	}
+
+	int getNameEnd() {
+		return nameEnd;
+	}
+
+	// Between the brackets, without the slashes; e.g. 'p class="x"' for opening tags, 'br' for empty tags and 'p' for closing tags.
+	int getFullNameStart(int type) {
+		return type == CLOSING_TAG ? tagStart + 2 : tagStart + 1;
+	}
+
+	int getFullNameEnd(int type) {
+		return type == EMPTY_TAG ? tagEnd - 1 : tagEnd;
+	}
+
+	// End of the comment, CDATA or processing instruction starting at the index, or -1 if there is none.
+	private int getSkipPosition(int index) {
+
+		String end;
+
+		if (html.startsWith(COMMENT_START, index)) {
+			end = COMMENT_END;
+			index += COMMENT_START.length();
+		} else if (html.startsWith(CDATA_START, index)) {
+			end = CDATA_END;
+			index += CDATA_START.length();
+		} else if (html.startsWith(PROCESSING_INSTRUCTION_START, index)) {
+			end = PROCESSING_INSTRUCTION_END;
+			index += PROCESSING_INSTRUCTION_START.length();
+		} else {
+			return -1;
+		}
+
+		int endIndex = html.indexOf(end, index);
+
+		return endIndex == -1 ? html.length() : endIndex + end.length();
+	}
+
+	private int setName() {
+
+		int type;
+
+		if (html.charAt(tagEnd - 1) == '/') {
+			type = EMPTY_TAG;
+		} else if (html.charAt(tagStart + 1) == '/') {
+			type = CLOSING_TAG;
+		} else {
+			type = OPENING_TAG;
+		}
+
+		nameStart = getFullNameStart(type);
+		nameEnd = getFullNameEnd(type);
+
+		if (type == CLOSING_TAG) { // Compared as is with the opening tag names.
+			return type;
+		}
+
+		// Name is the first word once the full name is trimmed, if the full name has any spaces.
+		int spaceIndex = nameStart;
+
+		while (spaceIndex < nameEnd && html.charAt(spaceIndex) != ' ') {
+			spaceIndex++;
+		}
+
+		if (spaceIndex == nameEnd) {
+			return type;
+		}
+
+		while (nameStart < nameEnd && html.charAt(nameStart) <= ' ') {
+			nameStart++;
+		}
+
+		while (nameEnd > nameStart && html.charAt(nameEnd - 1) <= ' ') {
+			nameEnd--;
+		}
+
+		int index = Math.min(nameStart + 1, nameEnd);
+
+		while (index < nameEnd && html.charAt(index) != ' ') {
+			index++;
+		}
+
+		nameEnd = index;
+
+		return type;
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.github.mertakdut;
+
+import java.io.File;
+
+import com.github.mertakdut.exception.ReadingException;
+
+// Keeps the cover thumbnails of books in a directory. Files are named by the book's content and the thumbnail size, so the same book at another path shares its thumbnails.
+class ThumbnailCache extends FileCache {
+
+	// Part of the keys. Increased when the thumbnails change, so the ones made by older versions aren't used.
+	private static final int THUMBNAIL_VERSION = 2;
+
+	ThumbnailCache(File directory) {
+		super(directory, CoverThumbnail.FORMAT);
+	}
+
+	static String getKey(String contentDigest, int maxWidth, int maxHeight) throws ReadingException {
+		return ContextHelper.digest(THUMBNAIL_VERSION + "|" + contentDigest + "|" + maxWidth + "x" + maxHeight);
+	}
+
+}
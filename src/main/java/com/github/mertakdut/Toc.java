@@ -2,15 +2,21 @@ package com.github.mertakdut;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import org.w3c.dom.DOMException;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 
 import com.github.mertakdut.exception.ReadingException;
 
@@ -26,6 +32,14 @@ public class Toc extends BaseFindings implements Serializable {
 
 	private transient boolean isHeadFound, isNavMapFound;
 
+	// Streaming state.
+	private transient boolean isInHead, isInNavMap, isInNavLabel;
+	private transient int skippedDepth; // Depth inside a node which has nothing needed.
+	private transient List<NavPoint> parsedNavPoints; // In document order; nested ones come after their parents.
+	private transient List<NavPoint> openNavPoints;
+	private transient StringBuilder navLabelTextBuilder;
+	private transient int navLabelTextDepth;
+
 	public Toc() {
 		head = new Head();
 		navMap = new NavMap();
@@ -42,8 +56,6 @@ public class Toc extends BaseFindings implements Serializable {
 
 		void fillAttributes(NodeList nodeList) throws ReadingException {
 
-			Field[] fields = Toc.Head.class.getDeclaredFields();
-
 			for (int i = 0; i < nodeList.getLength(); i++) {
 
 				String metaNodeName = nodeList.item(i).getNodeName();
@@ -53,39 +65,44 @@ public class Toc extends BaseFindings implements Serializable {
 				}
 
 				if (metaNodeName.equals("meta")) {
-					NamedNodeMap attributes = nodeList.item(i).getAttributes();
+					NamedNodeMap nodeMap = nodeList.item(i).getAttributes();
 
-					for (int k = 0; k < attributes.getLength(); k++) {
-						Node attribute = attributes.item(k);
+					Map<String, String> attributes = new HashMap<>();
 
-						if (attribute.getNodeName().equals("name")) {
+					for (int k = 0; k < nodeMap.getLength(); k++) {
+						Node attribute = nodeMap.item(k);
+						attributes.put(attribute.getNodeName(), attribute.getNodeValue());
+					}
 
-							String attributeNodeValue = attribute.getNodeValue();
+					fillAttribute(attributes);
+				}
+			}
+		}
 
-							if (attributeNodeValue.contains(Character.toString(Constants.COLON))) {
-								attributeNodeValue = ContextHelper.getTextAfterCharacter(attributeNodeValue, Constants.COLON);
-							}
+		// Fills the field named by the meta node, e.g. <meta name="dtb:depth" content="2"/> -> depth
+		void fillAttribute(Map<String, String> metaAttributes) throws ReadingException {
 
-							for (int j = 0; j < fields.length; j++) {
-
-								if (attributeNodeValue.equals(fields[j].getName())) {
-
-									// Find content in attributes
-									for (int l = 0; l < attributes.getLength(); l++) {
-										if (attributes.item(l).getNodeName().equals("content")) {
-											fields[j].setAccessible(true);
-											try {
-												fields[j].set(this, attributes.item(l).getNodeValue());
-											} catch (IllegalArgumentException | IllegalAccessException | DOMException e) {
-												e.printStackTrace();
-												throw new ReadingException("Exception while parsing " + Constants.EXTENSION_NCX + " content: " + e.getMessage());
-											}
-											break;
-										}
-									}
-								}
-							}
-						}
+			String attributeNodeValue = metaAttributes.get("name");
+
+			if (attributeNodeValue == null || !metaAttributes.containsKey("content")) {
+				return;
+			}
+
+			if (attributeNodeValue.contains(Character.toString(Constants.COLON))) {
+				attributeNodeValue = ContextHelper.getTextAfterCharacter(attributeNodeValue, Constants.COLON);
+			}
+
+			Field[] fields = Toc.Head.class.getDeclaredFields();
+
+			for (int j = 0; j < fields.length; j++) {
+
+				if (attributeNodeValue.equals(fields[j].getName())) {
+					fields[j].setAccessible(true);
+					try {
+						fields[j].set(this, metaAttributes.get("content"));
+					} catch (IllegalArgumentException | IllegalAccessException e) {
+						e.printStackTrace();
+						throw new ReadingException("Exception while parsing " + Constants.EXTENSION_NCX + " content: " + e.getMessage());
 					}
 				}
 			}
@@ -107,6 +124,22 @@ public class Toc extends BaseFindings implements Serializable {
 			return maxPageNumber;
 		}
 
+		void setUid(String uid) {
+			this.uid = uid;
+		}
+
+		void setDepth(String depth) {
+			this.depth = depth;
+		}
+
+		void setTotalPageCount(String totalPageCount) {
+			this.totalPageCount = totalPageCount;
+		}
+
+		void setMaxPageNumber(String maxPageNumber) {
+			this.maxPageNumber = maxPageNumber;
+		}
+
 		void print() {
 			System.out.println("\n\nPrinting Head...\n");
 			System.out.println("uid: " + getUid());
@@ -121,11 +154,17 @@ public class Toc extends BaseFindings implements Serializable {
 		private static final long serialVersionUID = -3629764613712749465L;
 
 		private List<NavPoint> navPoints;
+		private transient Set<String> contentSrcs; // Contents of the added navPoints, to skip duplicates.
 
 		public List<NavPoint> getNavPoints() {
 			return navPoints;
 		}
 
+		void setNavPoints(List<NavPoint> navPoints) {
+			this.navPoints = navPoints;
+			this.contentSrcs = null;
+		}
+
 		// TODO: navMap (epub2) and pageList (epub3) should be merged as well. Just as we merged spine and toc.ncx. Or just sorting them by their playOrder is enough?
 		void fillNavPoints(NodeList possiblyNavPoints) throws ReadingException {
 
@@ -133,7 +172,24 @@ public class Toc extends BaseFindings implements Serializable {
 				this.navPoints = new ArrayList<>();
 			}
 
-			for (int i = 0; i < possiblyNavPoints.getLength(); i++) {
+			// Nested navPoints are read right after their parent. Explicit stack instead of recursion; deeply nested files shouldn't overflow.
+			Deque<NodeList> nodeListStack = new ArrayDeque<>();
+			Deque<Integer> indexStack = new ArrayDeque<>();
+
+			nodeListStack.push(possiblyNavPoints);
+			indexStack.push(0);
+
+			while (!nodeListStack.isEmpty()) {
+
+				possiblyNavPoints = nodeListStack.peek();
+				int i = indexStack.pop();
+
+				if (i >= possiblyNavPoints.getLength()) {
+					nodeListStack.pop();
+					continue;
+				}
+
+				indexStack.push(i + 1);
 
 				String navPointNodeName = possiblyNavPoints.item(i).getNodeName();
 
@@ -209,24 +265,35 @@ public class Toc extends BaseFindings implements Serializable {
 						}
 					}
 
-					boolean duplicateOrNullContentSrc = false;
+					addNavPoint(navPoint);
 
-					for (NavPoint navPointItem : this.navPoints) {
-						if (navPoint.getContentSrc() == null || navPoint.getContentSrc().equals(navPointItem.getContentSrc())) {
-							duplicateOrNullContentSrc = true;
-							break;
-						}
+					// Sometimes navPoint nodes may have another navPoint nodes inside them. Even though this means malformed toc.ncx file, it shouldn't hurt to try to read them as well.
+					if (hasNestedNavPoints) {
+						nodeListStack.push(navPointChildNodes);
+						indexStack.push(0);
 					}
+				}
+			}
+		}
 
-					if (!duplicateOrNullContentSrc) {
-						this.navPoints.add(navPoint);
-					}
+		// Used while filling. NavPoints without content or pointing to an already added content are skipped.
+		void addNavPoint(NavPoint navPoint) {
 
-					// Sometimes navPoint nodes may have another navPoint nodes inside them. Even though this means malformed toc.ncx file, it shouldn't hurt to try to read them as well.
-					if (hasNestedNavPoints)
-						fillNavPoints(navPointChildNodes);
+			if (this.navPoints == null) {
+				this.navPoints = new ArrayList<>();
+			}
+
+			if (this.contentSrcs == null) {
+				this.contentSrcs = new HashSet<>();
+
+				for (NavPoint navPointItem : this.navPoints) {
+					this.contentSrcs.add(navPointItem.getContentSrc());
 				}
 			}
+
+			if (navPoint.getContentSrc() != null && this.contentSrcs.add(navPoint.getContentSrc())) {
+				this.navPoints.add(navPoint);
+			}
 		}
 
 		void sortNavMaps() {
@@ -273,6 +340,127 @@ public class Toc extends BaseFindings implements Serializable {
 		return isHeadFound && isNavMapFound;
 	}
 
+	@Override
+	boolean startElement(String nodeName, Attributes attributes) throws ReadingException {
+
+		if (nodeName.contains(Character.toString(Constants.COLON))) {
+			nodeName = ContextHelper.getTextAfterCharacter(nodeName, Constants.COLON);
+		}
+
+		if (isInHead) {
+			if (skippedDepth++ == 0 && nodeName.equals("meta")) {
+				Map<String, String> metaAttributes = attributesToMap(attributes);
+
+				if (metaAttributes != null) {
+					getHead().fillAttribute(metaAttributes);
+				}
+			}
+		} else if (isInNavMap) {
+			startNavMapElement(nodeName, attributes);
+		} else if (nodeName.equals("head")) {
+			isInHead = true;
+			skippedDepth = 0;
+		} else if (nodeName.equals("navMap") || nodeName.equals("pageList")) {
+			isInNavMap = true;
+			skippedDepth = 0;
+			parsedNavPoints = new ArrayList<>();
+			openNavPoints = new ArrayList<>();
+		}
+
+		return false;
+	}
+
+	private void startNavMapElement(String nodeName, Attributes attributes) throws ReadingException {
+
+		if (navLabelTextBuilder != null) { // Text content includes the text of nested nodes as well.
+			navLabelTextDepth++;
+		} else if (skippedDepth > 0) {
+			skippedDepth++;
+		} else if (isInNavLabel) {
+			if (nodeName.equals("text")) {
+				navLabelTextBuilder = new StringBuilder();
+				navLabelTextDepth = 0;
+			} else {
+				skippedDepth = 1;
+			}
+		} else if (nodeName.equals("navPoint") || nodeName.equals("pageTarget")) {
+			NavPoint navPoint = new NavPoint();
+
+			for (int i = 0; i < attributes.getLength(); i++) {
+				if (attributes.getQName(i).equals("id")) {
+					navPoint.setId(attributes.getValue(i));
+				} else if (attributes.getQName(i).equals("playOrder")) {
+					navPoint.setPlayOrder(Integer.parseInt(attributes.getValue(i)));
+				} else if (attributes.getQName(i).equals("type")) {
+					navPoint.setType(attributes.getValue(i));
+				}
+			}
+
+			parsedNavPoints.add(navPoint);
+			openNavPoints.add(navPoint);
+		} else if (!openNavPoints.isEmpty() && nodeName.equals("navLabel")) {
+			isInNavLabel = true;
+		} else if (!openNavPoints.isEmpty() && nodeName.equals("content")) {
+			String contentSrc = attributes.getValue("src");
+
+			if (contentSrc != null && !contentSrc.equals("")) {
+				String encodedContentSrc = ContextHelper.encodeToUtf8(ContextHelper.getTextAfterCharacter(contentSrc, Constants.SLASH));
+				openNavPoints.get(openNavPoints.size() - 1).setContentSrc(encodedContentSrc);
+			}
+
+			skippedDepth = 1;
+		} else {
+			skippedDepth = 1;
+		}
+	}
+
+	@Override
+	boolean endElement(String nodeName) {
+
+		if (isInHead) {
+			if (skippedDepth-- == 0) {
+				isInHead = false;
+				isHeadFound = true;
+				return isHeadFound && isNavMapFound;
+			}
+		} else if (isInNavMap) {
+			if (navLabelTextBuilder != null) {
+				if (navLabelTextDepth-- == 0) {
+					openNavPoints.get(openNavPoints.size() - 1).setNavLabel(navLabelTextBuilder.toString());
+					navLabelTextBuilder = null;
+				}
+			} else if (skippedDepth > 0) {
+				skippedDepth--;
+			} else if (isInNavLabel) {
+				isInNavLabel = false;
+			} else if (!openNavPoints.isEmpty()) {
+				openNavPoints.remove(openNavPoints.size() - 1);
+			} else { // navMap is over.
+				for (NavPoint navPoint : parsedNavPoints) {
+					getNavMap().addNavPoint(navPoint);
+				}
+
+				getNavMap().sortNavMaps();
+
+				isInNavMap = false;
+				parsedNavPoints = null;
+				openNavPoints = null;
+
+				isNavMapFound = true;
+				return isHeadFound && isNavMapFound;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	void characters(char[] ch, int start, int length) {
+		if (navLabelTextBuilder != null) {
+			navLabelTextBuilder.append(ch, start, length);
+		}
+	}
+
 	public Head getHead() {
 		return head;
 	}
@@ -286,6 +474,28 @@ public class Toc extends BaseFindings implements Serializable {
 		getNavMap().print();
 	}
 
+	// Copy for a reader of a shared book; navPoints are changed while reading. Head is shared, it's only read.
+	Toc copy() {
+
+		Toc copy = new Toc();
+		copy.head = head;
+		copy.lastPageIndex = lastPageIndex;
+
+		List<NavPoint> navPoints = getNavMap().getNavPoints();
+
+		if (navPoints != null) {
+			List<NavPoint> copiedNavPoints = new ArrayList<>(navPoints.size());
+
+			for (NavPoint navPoint : navPoints) {
+				copiedNavPoints.add(navPoint.copy());
+			}
+
+			copy.getNavMap().setNavPoints(copiedNavPoints);
+		}
+
+		return copy;
+	}
+
 	int getLastPageIndex() {
 		return lastPageIndex;
 	}
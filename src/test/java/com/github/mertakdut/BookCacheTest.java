@@ -0,0 +1,142 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.github.mertakdut.exception.ReadingException;
+
+public class BookCacheTest {
+
+	@Test
+	public void evictsLeastRecentlyUsedBooks() throws IOException, ReadingException {
+		String a = createBookFile();
+		String b = createBookFile();
+		String c = createBookFile();
+
+		BookCache bookCache = new BookCache(2);
+
+		try {
+			Book bookA = bookCache.getBook(a);
+			Book bookB = bookCache.getBook(b);
+			bookCache.getBook(a); // b is the least recently used now.
+			bookCache.getBook(c);
+
+			assertSame(bookA, bookCache.getBook(a));
+			assertNotSame(bookB, bookCache.getBook(b));
+		} finally {
+			bookCache.close();
+		}
+	}
+
+	@Test
+	public void evictsBeyondTotalFileSize() throws IOException, ReadingException {
+		String a = createBookFile();
+		String b = createBookFile();
+		String c = createBookFile();
+
+		long fileSize = new File(a).length();
+		BookCache bookCache = new BookCache(10, 2 * fileSize + fileSize / 2, Optionals.DEFAULT.maxEntryContentCacheSize); // Room for two.
+
+		try {
+			Book bookA = bookCache.getBook(a);
+			Book bookB = bookCache.getBook(b);
+			bookCache.getBook(c);
+
+			assertSame(bookB, bookCache.getBook(b));
+			assertNotSame(bookA, bookCache.getBook(a));
+		} finally {
+			bookCache.close();
+		}
+	}
+
+	@Test
+	public void keepsBookLargerThanTotalFileSize() throws IOException, ReadingException {
+		String a = createBookFile();
+
+		BookCache bookCache = new BookCache(10, 1, Optionals.DEFAULT.maxEntryContentCacheSize);
+
+		try {
+			assertSame(bookCache.getBook(a), bookCache.getBook(a));
+		} finally {
+			bookCache.close();
+		}
+	}
+
+	@Test
+	public void checksModificationsOncePerInterval() throws IOException, ReadingException {
+		String a = createBookFile();
+
+		BookCache bookCache = new BookCache(2);
+		bookCache.setModificationCheckInterval(60 * 60 * 1000);
+
+		try {
+			Book book = bookCache.getBook(a);
+
+			assertTrue(new File(a).setLastModified(new File(a).lastModified() + 5000));
+			assertSame(book, bookCache.getBook(a)); // Not checked again yet.
+
+			bookCache.setModificationCheckInterval(0);
+			assertNotSame(book, bookCache.getBook(a));
+		} finally {
+			bookCache.close();
+		}
+	}
+
+	@Test
+	public void loadsBookOnceForConcurrentRequests() throws IOException, InterruptedException, ExecutionException {
+		final String a = createBookFile();
+
+		final BookCache bookCache = new BookCache(2);
+		final CyclicBarrier barrier = new CyclicBarrier(8);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			List<Future<Book>> futures = new ArrayList<>();
+
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<Book>() {
+					@Override
+					public Book call() throws Exception {
+						barrier.await();
+						return bookCache.getBook(a);
+					}
+				}));
+			}
+
+			Set<Book> books = Collections.newSetFromMap(new IdentityHashMap<Book, Boolean>());
+
+			for (Future<Book> future : futures) {
+				books.add(future.get());
+			}
+
+			assertEquals(1, books.size());
+		} finally {
+			executor.shutdown();
+			bookCache.close();
+		}
+	}
+
+	private String createBookFile() throws IOException {
+		return TestEpub.create(TestEpub.createParagraphs(2000)).getPath();
+	}
+
+}
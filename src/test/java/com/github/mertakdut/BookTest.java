@@ -0,0 +1,195 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.github.mertakdut.exception.OutOfPagesException;
+import com.github.mertakdut.exception.ReadingException;
+
+public class BookTest {
+
+	@Test
+	public void sharesLayoutOfReadersWithSameOptions() throws IOException, ReadingException {
+		File file = TestEpub.create(TestEpub.createParagraphs(5000), TestEpub.createParagraphs(3000));
+		Book book = Book.open(file.getPath());
+
+		try {
+			Reader reader = createReader(book, 1000);
+			Reader sameOptionsReader = createReader(book, 1000);
+			Reader otherOptionsReader = createReader(book, 2000);
+
+			assertSame(reader.getToc(), sameOptionsReader.getToc());
+			assertNotSame(reader.getToc(), otherOptionsReader.getToc());
+
+			otherOptionsReader.setMaxContentPerSection(1000);
+			assertSame(reader.getToc(), otherOptionsReader.getToc());
+
+			Toc toc = reader.getToc();
+
+			reader.close();
+			sameOptionsReader.close();
+			otherOptionsReader.close();
+
+			assertNotSame(toc, createReader(book, 1000).getToc()); // Dropped with its last reader.
+		} finally {
+			book.close();
+		}
+	}
+
+	@Test
+	public void readsSharedLayoutAsPrivateOne() throws IOException, ReadingException, InterruptedException, ExecutionException {
+		File file = TestEpub.create(TestEpub.createParagraphs(5000), "<p>Short chapter.</p>", TestEpub.createParagraphs(8000));
+
+		List<String> sections = readAllSections(file.getPath());
+
+		Book book = Book.open(file.getPath());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			List<List<Future<BookSection>>> readerSections = new ArrayList<>();
+
+			for (int i = 0; i < 8; i++) {
+				Reader reader = createReader(book, 700);
+				List<Future<BookSection>> futures = new ArrayList<>();
+
+				for (int j = 0; j < sections.size(); j++) {
+					int index = i % 2 == 0 ? j : sections.size() - 1 - j; // Half of them jump to the end first.
+					futures.add(reader.readSectionAsync(index, executor));
+				}
+
+				readerSections.add(futures);
+			}
+
+			for (int i = 0; i < readerSections.size(); i++) {
+				for (int j = 0; j < sections.size(); j++) {
+					int index = i % 2 == 0 ? j : sections.size() - 1 - j;
+					assertEquals("Reader " + i + " section " + index, sections.get(index), readerSections.get(i).get(j).get().getSectionContent());
+				}
+			}
+		} finally {
+			executor.shutdown();
+			book.close();
+		}
+	}
+
+	@Test
+	public void savesEachReadersOwnLastPage() throws IOException, ReadingException, OutOfPagesException {
+		File file = TestEpub.create(TestEpub.createParagraphs(5000));
+		Book book = Book.open(file.getPath());
+
+		try {
+			MemoryProgressStore progressStore = new MemoryProgressStore();
+			MemoryProgressStore otherProgressStore = new MemoryProgressStore();
+
+			Reader reader = createReader(book, 1000, progressStore);
+			Reader otherReader = createReader(book, 1000, otherProgressStore);
+
+			reader.readSection(3);
+			otherReader.readSection(1);
+
+			reader.saveProgress();
+			otherReader.saveProgress();
+
+			assertEquals(3, createReader(book, 1000, progressStore).loadProgress());
+			assertEquals(1, createReader(book, 1000, otherProgressStore).loadProgress());
+		} finally {
+			book.close();
+		}
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedTagTables() throws IOException, ReadingException {
+		String htmlBody = TestEpub.createParagraphs(10 * 1024);
+
+		TagTable tagTable = createTagTable(htmlBody);
+		long tagTableSize = tagTable.getSize();
+
+		File file = TestEpub.create("<p>Chapter.</p>");
+		Book book = Book.open(file.getPath(), 2 * tagTableSize + tagTableSize / 2); // Room for two tables.
+
+		try {
+			assertSame(tagTable, book.putTagTable("a", tagTable));
+			book.putTagTable("b", createTagTable(htmlBody));
+			book.findTagTable("a"); // b is the least recently used now.
+			book.putTagTable("c", createTagTable(htmlBody));
+
+			assertNotNull(book.findTagTable("a"));
+			assertNull(book.findTagTable("b"));
+			assertNotNull(book.findTagTable("c"));
+
+			assertSame(tagTable, book.putTagTable("a", createTagTable(htmlBody))); // Table put first is kept.
+		} finally {
+			book.close();
+		}
+	}
+
+	@Test
+	public void doesNotKeepTagTablesLargerThanLimit() throws IOException, ReadingException {
+		TagTable tagTable = createTagTable(TestEpub.createParagraphs(10 * 1024));
+
+		File file = TestEpub.create("<p>Chapter.</p>");
+		Book book = Book.open(file.getPath(), tagTable.getSize() - 1);
+
+		try {
+			assertSame(tagTable, book.putTagTable("a", tagTable));
+			assertNull(book.findTagTable("a"));
+		} finally {
+			book.close();
+		}
+	}
+
+	private Reader createReader(Book book, int maxContentPerSection) throws ReadingException {
+		return createReader(book, maxContentPerSection, new MemoryProgressStore());
+	}
+
+	private Reader createReader(Book book, int maxContentPerSection, ProgressStore progressStore) throws ReadingException {
+		Reader reader = new Reader();
+		reader.setMaxContentPerSection(maxContentPerSection);
+		reader.setProgressStore(progressStore);
+		reader.setFullContent(book);
+
+		return reader;
+	}
+
+	// Read in order by a reader of its own.
+	private List<String> readAllSections(String filePath) throws ReadingException {
+		List<String> sections = new ArrayList<>();
+
+		Reader reader = new Reader();
+		reader.setMaxContentPerSection(700);
+		reader.setFullContent(filePath);
+
+		try {
+			while (true) {
+				sections.add(reader.readSection(sections.size()).getSectionContent());
+			}
+		} catch (OutOfPagesException e) {
+			// Read all.
+		}
+
+		return sections;
+	}
+
+	// Shared tables are put with their indexes built.
+	private TagTable createTagTable(String htmlBody) {
+		TagTable tagTable = new TagTable(htmlBody);
+		tagTable.buildIndexes();
+
+		return tagTable;
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.github.mertakdut.exception.OutOfPagesException;
+import com.github.mertakdut.exception.ReadingException;
+
+public class EntryContentCacheTest {
+
+	@Test
+	public void decodesLargeEntryOnceWhilePaging() throws IOException, ReadingException {
+		File file = TestEpub.create(TestEpub.createParagraphs(3 * 1024 * 1024));
+
+		Reader reader = new Reader();
+
+		try {
+			reader.setMaxContentPerSection(100 * 1024);
+			reader.setFullContent(file.getPath());
+
+			int pageCount = readAllSections(reader);
+
+			assertTrue("Entry isn't trimmed into pages: " + pageCount, pageCount > 20);
+			assertEquals(1, reader.getEntryContentCacheMissCount());
+			assertEquals(pageCount - 1, reader.getEntryContentCacheHitCount());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedEntries() {
+		EntryContentCache cache = new EntryContentCache(2 * 250);
+
+		cache.put("a", new EntryContent("", createString(100), ""));
+		cache.put("b", new EntryContent("", createString(100), ""));
+		cache.get("a");
+		cache.put("c", new EntryContent("", createString(100), ""));
+
+		assertTrue(cache.get("a") != null);
+		assertTrue(cache.get("b") == null);
+		assertTrue(cache.get("c") != null);
+		assertEquals(2 * 200, cache.getSize());
+
+		cache.setMaxSize(2 * 100);
+
+		assertTrue(cache.get("a") == null);
+		assertEquals(2 * 100, cache.getSize());
+	}
+
+	private int readAllSections(Reader reader) throws ReadingException {
+		int index = 0;
+
+		try {
+			while (true) {
+				reader.readSection(index);
+				index++;
+			}
+		} catch (OutOfPagesException e) {
+			return index;
+		}
+	}
+
+	private String createString(int length) {
+		return new String(new char[length]);
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.github.mertakdut.exception.ReadingException;
+
+public class FileProgressStoreTest {
+
+	@Test
+	public void replacesSavedProgress() throws IOException, ReadingException {
+		File bookFile = createBookFile();
+		SidecarProgressStore store = new SidecarProgressStore();
+
+		assertFalse(store.contains(bookFile.getPath()));
+		assertNull(store.load(bookFile.getPath()));
+
+		store.save(bookFile.getPath(), new byte[] { 1, 2 });
+		store.save(bookFile.getPath(), new byte[] { 3 });
+
+		assertArrayEquals(new byte[] { 3 }, store.load(bookFile.getPath()));
+	}
+
+	@Test
+	public void loadsProgressMovedAsideByInterruptedSave() throws IOException, ReadingException {
+		File bookFile = createBookFile();
+		SidecarProgressStore store = new SidecarProgressStore();
+
+		File progressFile = store.getProgressFile(bookFile.getPath());
+		File oldFile = new File(progressFile.getPath() + ".old");
+		oldFile.deleteOnExit();
+
+		write(oldFile, new byte[] { 4, 5 }); // As if the save stopped after moving the previous progress aside.
+
+		assertTrue(store.contains(bookFile.getPath()));
+		assertArrayEquals(new byte[] { 4, 5 }, store.load(bookFile.getPath()));
+
+		store.save(bookFile.getPath(), new byte[] { 6 });
+
+		assertArrayEquals(new byte[] { 6 }, store.load(bookFile.getPath()));
+		assertFalse(oldFile.exists());
+	}
+
+	private File createBookFile() throws IOException {
+		File bookFile = File.createTempFile("book", Constants.EXTENSION_EPUB);
+		bookFile.deleteOnExit();
+		new SidecarProgressStore().getProgressFile(bookFile.getPath()).deleteOnExit();
+
+		return bookFile;
+	}
+
+	private void write(File file, byte[] bytes) throws IOException {
+		FileOutputStream outputStream = new FileOutputStream(file);
+
+		try {
+			outputStream.write(bytes);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+}
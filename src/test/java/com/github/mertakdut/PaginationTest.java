@@ -0,0 +1,122 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.mertakdut.exception.OutOfPagesException;
+import com.github.mertakdut.exception.ReadingException;
+
+public class PaginationTest {
+
+	private static final String[] WORDS = { "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit" };
+
+	@Test
+	public void trimsSectionsToMaxContentPerSection() throws IOException, ReadingException {
+		String htmlBody = createHtmlBody(new Random(5), 400);
+		File file = TestEpub.create(htmlBody, "<p>Short chapter.</p>");
+
+		for (int maxContentPerSection : new int[] { 300, 1000, 2500 }) {
+			Reader reader = new Reader();
+
+			try {
+				reader.setMaxContentPerSection(maxContentPerSection);
+				reader.setFullContent(file.getPath());
+
+				readAllSections(reader);
+
+				assertSections(htmlBody, reader.getToc().getNavMap().getNavPoints(), maxContentPerSection);
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	// Sections of the first entry cover its body, one after another. Each holds at most maxContentPerSection visible characters; all but the last are cut within a word of it.
+	private void assertSections(String htmlBody, List<NavPoint> navPoints, int maxContentPerSection) {
+
+		String entryName = navPoints.get(0).getEntryName();
+
+		int sectionCount = 0;
+		int previousEnd = 0;
+
+		for (NavPoint navPoint : navPoints) {
+			if (!entryName.equals(navPoint.getEntryName())) {
+				break;
+			}
+
+			int start = navPoint.getBodyTrimStartPosition();
+			int end = navPoint.getBodyTrimEndPosition() != 0 ? navPoint.getBodyTrimEndPosition() : htmlBody.length(); // 0 for the last one.
+
+			assertEquals("Cut " + sectionCount + " at " + maxContentPerSection, previousEnd, start);
+			assertTrue("Empty section " + sectionCount + " at " + maxContentPerSection, end > start);
+
+			int visibleLength = getVisibleLength(htmlBody.substring(start, end));
+			assertTrue("Section " + sectionCount + " has " + visibleLength + " characters at " + maxContentPerSection, visibleLength <= maxContentPerSection);
+
+			if (end != htmlBody.length()) {
+				assertTrue("Section " + sectionCount + " has " + visibleLength + " characters at " + maxContentPerSection, visibleLength > maxContentPerSection - 20);
+			}
+
+			previousEnd = end;
+			sectionCount++;
+		}
+
+		assertEquals(htmlBody.length(), previousEnd);
+		assertTrue(sectionCount > 1);
+	}
+
+	private int getVisibleLength(String html) {
+		return html.replaceAll("<[^>]*>", "").length();
+	}
+
+	private void readAllSections(Reader reader) throws ReadingException {
+		int index = 0;
+
+		try {
+			while (true) {
+				reader.readSection(index++);
+			}
+		} catch (OutOfPagesException e) {
+			// Read all.
+		}
+	}
+
+	// Nested tags, with empty ones, around text; no tables, they are kept whole.
+	private String createHtmlBody(Random random, int paragraphCount) {
+		StringBuilder htmlBody = new StringBuilder();
+
+		for (int i = 0; i < paragraphCount; i++) {
+			boolean isInDiv = random.nextBoolean();
+			htmlBody.append(isInDiv ? "<div class=\"d\"><p>" : "<p>");
+
+			int wordCount = 5 + random.nextInt(30);
+
+			for (int j = 0; j < wordCount; j++) {
+				String word = WORDS[random.nextInt(WORDS.length)];
+				int markup = random.nextInt(10);
+
+				if (markup == 0) {
+					htmlBody.append("<em>").append(word).append("</em> ");
+				} else if (markup == 1) {
+					htmlBody.append("<span style=\"x\">").append(word).append(" <b>").append(word).append("</b></span> ");
+				} else if (markup == 2) {
+					htmlBody.append(word).append("<br/>");
+				} else {
+					htmlBody.append(word).append(' ');
+				}
+			}
+
+			htmlBody.append(isInDiv ? "</p></div>" : "</p>");
+		}
+
+		return htmlBody.toString();
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.mertakdut.exception.OutOfPagesException;
+import com.github.mertakdut.exception.ReadingException;
+
+public class ProgressCodecTest {
+
+	@Test
+	public void decodesEncodedProgress() throws ReadingException {
+		Toc toc = ProgressCodec.decode(ProgressCodec.encode(createToc()));
+
+		assertEquals(1, toc.getLastPageIndex());
+		assertEquals(2, toc.getNavMap().getNavPoints().size());
+		assertEquals("div", toc.getNavMap().getNavPoints().get(1).getOpenTags().get(0).getTagName());
+		assertEquals("div class=\"chapter\"", toc.getNavMap().getNavPoints().get(1).getOpenTags().get(0).getFullTagName());
+	}
+
+	@Test
+	public void loadsLegacySerializedProgress() throws IOException, ReadingException, OutOfPagesException {
+		File file = TestEpub.create(TestEpub.createParagraphs(20 * 1024), TestEpub.createParagraphs(1024));
+
+		Reader reader = new Reader();
+		String sectionContent;
+
+		try {
+			reader.setMaxContentPerSection(4 * 1024);
+			reader.setFullContent(file.getPath());
+
+			for (int i = 0; i < 4; i++) {
+				reader.readSection(i);
+			}
+
+			sectionContent = reader.readSection(3).getSectionContent();
+			reader.getToc().setLastPageIndex(3);
+		} finally {
+			reader.close();
+		}
+
+		// Older versions saved the toc with java serialization into the epub itself.
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+		objectOutputStream.writeObject(reader.getToc());
+		objectOutputStream.close();
+
+		new ArchiveProgressStore().save(file.getPath(), outputStream.toByteArray());
+
+		reader = new Reader();
+
+		try {
+			reader.setMaxContentPerSection(4 * 1024);
+			reader.setFullContent(file.getPath());
+
+			assertTrue(reader.isSavedProgressFound());
+			assertEquals(3, reader.loadProgress());
+			assertEquals(sectionContent, reader.readSection(3).getSectionContent());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void rejectsTruncatedProgress() throws ReadingException {
+		byte[] progress = ProgressCodec.encode(createToc());
+
+		for (int length = 0; length < progress.length; length++) {
+			try {
+				ProgressCodec.decode(Arrays.copyOf(progress, length));
+				fail("Progress truncated to " + length + " bytes is decoded.");
+			} catch (ReadingException e) {
+				// Expected.
+			}
+		}
+	}
+
+	@Test
+	public void rejectsBitFlippedProgressWithReadingException() throws ReadingException {
+		byte[] progress = ProgressCodec.encode(createToc());
+
+		for (int i = 0; i < progress.length; i++) {
+			for (int bit = 0; bit < 8; bit++) {
+				byte[] flipped = progress.clone();
+				flipped[i] ^= 1 << bit;
+
+				try {
+					ProgressCodec.decode(flipped); // May still be a valid progress; anything but a ReadingException fails the test.
+				} catch (ReadingException e) {
+					// Expected.
+				}
+			}
+		}
+	}
+
+	private Toc createToc() {
+		Tag tag = new Tag();
+		tag.setTagName("div");
+		tag.setFullTagName("div class=\"chapter\""); // Stored without the brackets, as the tokenizer finds it.
+		tag.setOpeningTagStartPosition(12);
+
+		List<NavPoint> navPoints = new ArrayList<>();
+
+		for (int i = 0; i < 2; i++) {
+			NavPoint navPoint = new NavPoint();
+			navPoint.setId("navPoint-" + i);
+			navPoint.setPlayOrder(i + 1);
+			navPoint.setNavLabel("Chapter " + i);
+			navPoint.setContentSrc("chapter" + i + ".xhtml");
+			navPoint.setEntryName("OEBPS/chapter" + i + ".xhtml");
+			navPoint.setBodyTrimStartPosition(i * 1000);
+			navPoint.setBodyTrimEndPosition((i + 1) * 1000);
+			navPoint.setCalculated(true);
+			navPoint.setOpenTags(Arrays.asList(tag));
+
+			navPoints.add(navPoint);
+		}
+
+		Toc toc = new Toc();
+		toc.getNavMap().setNavPoints(navPoints);
+		toc.setLastPageIndex(1);
+
+		return toc;
+	}
+
+}
@@ -0,0 +1,278 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TagTableTest {
+
+	private static final String[] TAG_NAMES = { "p", "div", "span", "em" };
+
+	@Test
+	public void keepsClosedTagsInOpeningOrder() {
+		String htmlBody = "<div class=\"x\"><p>a<br/>b</p><p>c<img src=\"i.png\"/></div>";
+		TagTable tagTable = new TagTable(htmlBody);
+
+		// The second <p> is never closed, so it isn't kept.
+		assertEquals(4, tagTable.size());
+
+		assertEquals("div", tagTable.getTagName(0));
+		assertEquals("div class=\"x\"", tagTable.getFullTagName(0, htmlBody));
+		assertEquals(1, tagTable.getOpeningPosition(0));
+		assertEquals(htmlBody.indexOf("</div>") + 1, tagTable.getClosingPosition(0));
+
+		assertEquals("p", tagTable.getTagName(1));
+		assertEquals(htmlBody.indexOf("</p>") + 1, tagTable.getClosingPosition(1));
+		assertFalse(tagTable.isEmptyTag(1));
+
+		assertEquals("br", tagTable.getTagName(2));
+		assertTrue(tagTable.isEmptyTag(2));
+
+		assertEquals("img", tagTable.getTagName(3));
+		assertEquals("img src=\"i.png\"", tagTable.getFullTagName(3, htmlBody));
+		assertTrue(tagTable.isEmptyTag(3));
+	}
+
+	@Test
+	public void answersRangeQueriesAsScanningAllTags() {
+		Random random = new Random(7);
+
+		for (int i = 0; i < 20; i++) {
+			String htmlBody = createHtmlBody(random, 20 + random.nextInt(120));
+			TagTable tagTable = new TagTable(htmlBody);
+
+			assertRangeQueries(htmlBody, tagTable);
+		}
+	}
+
+	@Test
+	public void answersEmptyBodies() {
+		for (String htmlBody : new String[] { "", "text only", "<p>never closed", "</p>closed only" }) {
+			TagTable tagTable = new TagTable(htmlBody);
+
+			assertEquals(0, tagTable.size());
+			assertRangeQueries(htmlBody, tagTable);
+		}
+	}
+
+	@Test
+	public void findsVisiblePositionsAsCountingVisibleCharacters() {
+		Random random = new Random(11);
+
+		for (int i = 0; i < 50; i++) {
+			String htmlBody = createHtmlBody(random, 20 + random.nextInt(200));
+			TagTable tagTable = new TagTable(htmlBody);
+
+			boolean[] hidden = getHiddenCharacters(htmlBody, tagTable);
+			int visibleLength = 0;
+
+			for (int position = 0; position <= htmlBody.length(); position++) {
+				assertEquals(htmlBody + " at " + position, visibleLength, tagTable.getVisibleLength(position));
+
+				if (position < htmlBody.length() && !hidden[position]) {
+					visibleLength++;
+				}
+			}
+
+			for (int length = 0; length <= visibleLength; length++) {
+				int position = tagTable.findVisiblePosition(length);
+
+				assertEquals(htmlBody + " for " + length, length, tagTable.getVisibleLength(position));
+				assertTrue(htmlBody + " for " + length, position == 0 || tagTable.getVisibleLength(position - 1) < length); // First such position.
+			}
+		}
+	}
+
+	@Test
+	public void copyHasItsOwnOmittedTags() {
+		String htmlBody = createHtmlBody(new Random(3), 100);
+		TagTable tagTable = new TagTable(htmlBody);
+		TagTable copy = tagTable.copyWithOwnOmittedTags();
+
+		assertRangeQueries(htmlBody, copy);
+
+		copy.setOmitted(0);
+		tagTable.setOmitted(1);
+
+		assertTrue(copy.isOmitted(0));
+		assertFalse(copy.isOmitted(1));
+		assertFalse(tagTable.isOmitted(0));
+		assertTrue(tagTable.isOmitted(1));
+	}
+
+	// Each query against a scan of all the rows, for ranges from every position of the body.
+	private void assertRangeQueries(String htmlBody, TagTable tagTable) {
+
+		Random random = new Random(htmlBody.length());
+
+		for (int start = 0; start <= htmlBody.length() + 1; start++) {
+			assertArrayEquals(htmlBody + " spanning " + start, scanTagsSpanning(tagTable, start), tagTable.getTagsSpanning(start));
+			assertEquals(htmlBody + " opened before " + start, scanLastOpenedBefore(tagTable, start), tagTable.findLastOpenedBefore(start));
+			assertEquals(htmlBody + " closed before " + start, scanLastClosedBefore(tagTable, start), tagTable.findLastClosedBefore(start));
+
+			for (int end = start; end <= htmlBody.length() + 1; end += 1 + random.nextInt(16)) {
+				int[] openedRows = scanTagsOpenedIn(tagTable, start, end);
+				int[] closedRows = scanTagsClosedIn(tagTable, start, end);
+
+				assertArrayEquals(htmlBody + " opened in " + start + "-" + end, openedRows, tagTable.getTagsOpenedIn(start, end));
+				assertArrayEquals(htmlBody + " closed in " + start + "-" + end, closedRows, tagTable.getTagsClosedIn(start, end));
+				assertArrayEquals(htmlBody + " opened or closed in " + start + "-" + end, scanTagsOpenedOrClosedIn(tagTable, start, end), tagTable.getTagsOpenedOrClosedIn(start, end));
+			}
+		}
+	}
+
+	private int[] scanTagsOpenedIn(TagTable tagTable, int start, int end) {
+		List<Integer> rows = new ArrayList<>();
+
+		for (int i = 0; i < tagTable.size(); i++) {
+			if (tagTable.getOpeningPosition(i) >= start && tagTable.getOpeningPosition(i) < end) {
+				rows.add(i);
+			}
+		}
+
+		return toArray(rows);
+	}
+
+	private int[] scanTagsClosedIn(TagTable tagTable, int start, int end) {
+		List<Integer> rows = new ArrayList<>();
+
+		for (int i = 0; i < tagTable.size(); i++) {
+			if (tagTable.getClosingPosition(i) >= start && tagTable.getClosingPosition(i) < end) {
+				rows.add(i);
+			}
+		}
+
+		sortByClosingPosition(tagTable, rows);
+
+		return toArray(rows);
+	}
+
+	private int[] scanTagsOpenedOrClosedIn(TagTable tagTable, int start, int end) {
+		List<Integer> rows = new ArrayList<>();
+
+		for (int i = 0; i < tagTable.size(); i++) {
+			if ((tagTable.getOpeningPosition(i) >= start && tagTable.getOpeningPosition(i) < end) || (tagTable.getClosingPosition(i) >= start && tagTable.getClosingPosition(i) < end)) {
+				rows.add(i);
+			}
+		}
+
+		return toArray(rows);
+	}
+
+	private int[] scanTagsSpanning(TagTable tagTable, int position) {
+		List<Integer> rows = new ArrayList<>();
+
+		for (int i = 0; i < tagTable.size(); i++) {
+			if (tagTable.getOpeningPosition(i) < position && tagTable.getClosingPosition(i) > position) {
+				rows.add(i);
+			}
+		}
+
+		return toArray(rows);
+	}
+
+	private int scanLastOpenedBefore(TagTable tagTable, int position) {
+		int lastRow = -1;
+
+		for (int i = 0; i < tagTable.size(); i++) {
+			if (tagTable.getOpeningPosition(i) < position) {
+				lastRow = i;
+			}
+		}
+
+		return lastRow;
+	}
+
+	private int scanLastClosedBefore(TagTable tagTable, int position) {
+		List<Integer> rows = new ArrayList<>();
+
+		for (int i = 0; i < tagTable.size(); i++) {
+			if (tagTable.getClosingPosition(i) < position) {
+				rows.add(i);
+			}
+		}
+
+		sortByClosingPosition(tagTable, rows);
+
+		return rows.isEmpty() ? -1 : rows.get(rows.size() - 1);
+	}
+
+	// Markups of the kept tags; text and the markups of the tags never closed are visible.
+	private boolean[] getHiddenCharacters(String htmlBody, TagTable tagTable) {
+		boolean[] hidden = new boolean[htmlBody.length()];
+
+		for (int i = 0; i < tagTable.size(); i++) {
+			int openingMarkupStart = tagTable.getOpeningPosition(i) - 1;
+			int openingMarkupEnd = htmlBody.indexOf('>', openingMarkupStart) + 1;
+
+			Arrays.fill(hidden, openingMarkupStart, openingMarkupEnd, true);
+
+			if (!tagTable.isEmptyTag(i)) {
+				int closingMarkupStart = tagTable.getClosingPosition(i) - 1;
+				int closingMarkupEnd = htmlBody.indexOf('>', closingMarkupStart) + 1;
+
+				Arrays.fill(hidden, closingMarkupStart, closingMarkupEnd, true);
+			}
+		}
+
+		return hidden;
+	}
+
+	// Nested, empty and never closed tags, closing tags without an opening one and text between them.
+	private String createHtmlBody(Random random, int tokenCount) {
+		StringBuilder htmlBody = new StringBuilder();
+		Deque<String> openedTagNames = new ArrayDeque<>();
+
+		for (int i = 0; i < tokenCount; i++) {
+			int token = random.nextInt(10);
+
+			if (token < 3) {
+				String tagName = TAG_NAMES[random.nextInt(TAG_NAMES.length)];
+				htmlBody.append('<').append(tagName).append(random.nextBoolean() ? " class=\"c" + i + "\"" : "").append('>');
+				openedTagNames.push(tagName);
+			} else if (token < 5 && !openedTagNames.isEmpty()) {
+				htmlBody.append("</").append(openedTagNames.pop()).append('>');
+			} else if (token == 5) {
+				htmlBody.append(random.nextBoolean() ? "<br/>" : "<img src=\"i" + i + ".png\"/>");
+			} else if (token == 6) {
+				htmlBody.append("</").append(TAG_NAMES[random.nextInt(TAG_NAMES.length)]).append('>'); // May close an outer tag, or none.
+			} else {
+				htmlBody.append("text ").append(i).append(' ');
+			}
+		}
+
+		return htmlBody.toString();
+	}
+
+	private void sortByClosingPosition(final TagTable tagTable, List<Integer> rows) {
+		Collections.sort(rows, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer row1, Integer row2) {
+				return Integer.compare(tagTable.getClosingPosition(row1), tagTable.getClosingPosition(row2));
+			}
+		});
+	}
+
+	private int[] toArray(List<Integer> rows) {
+		int[] array = new int[rows.size()];
+
+		for (int i = 0; i < array.length; i++) {
+			array[i] = rows.get(i);
+		}
+
+		return array;
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TagTokenizerTest {
+
+	@Test
+	public void findsOpeningClosingAndEmptyTags() {
+		String html = "<p class=\"x\">Text<br/><img src=\"a.png\" /></p>";
+
+		assertEquals(Arrays.asList("open p [p class=\"x\"] 0-12", "empty br [br] 17-21", "empty img [img src=\"a.png\" ] 22-40", "close p [p] 41-44"), tokenize(html));
+	}
+
+	@Test
+	public void doesNotEndTagAtQuotedClosingBracket() {
+		String html = "<a title=\"a > b\" href='c>d'>Link</a>";
+
+		assertEquals(Arrays.asList("open a [a title=\"a > b\" href='c>d'] 0-27", "close a [a] 32-35"), tokenize(html));
+	}
+
+	@Test
+	public void skipsComments() {
+		String html = "<p><!-- <div> isn't a tag --></p>";
+
+		assertEquals(Arrays.asList("open p [p] 0-2", "close p [p] 29-32"), tokenize(html));
+	}
+
+	@Test
+	public void skipsCdataSections() {
+		String html = "<p><![CDATA[ <div> ]]></p>";
+
+		assertEquals(Arrays.asList("open p [p] 0-2", "close p [p] 22-25"), tokenize(html));
+	}
+
+	@Test
+	public void skipsProcessingInstructions() {
+		String html = "<?xml version=\"1.0\"?><p>Text</p>";
+
+		assertEquals(Arrays.asList("open p [p] 21-23", "close p [p] 28-31"), tokenize(html));
+	}
+
+	@Test
+	public void skipsRestOfUnterminatedComment() {
+		String html = "<p>Text</p><!-- <div>";
+
+		assertEquals(Arrays.asList("open p [p] 0-2", "close p [p] 7-10"), tokenize(html));
+	}
+
+	@Test
+	public void dropsUnclosedTagCandidate() {
+		String html = "< <p>Text</p>";
+
+		assertEquals(Arrays.asList("open p [p] 2-4", "close p [p] 9-12"), tokenize(html));
+	}
+
+	@Test
+	public void trimsNameOfTagWithSpaces() {
+		String html = "< p  class=\"x\" >";
+
+		assertEquals(Arrays.asList("open p [ p  class=\"x\" ] 0-15"), tokenize(html));
+	}
+
+	// Each tag as "<type> <name> [<full name>] <start>-<end>".
+	private List<String> tokenize(String html) {
+		List<String> tags = new ArrayList<>();
+
+		TagTokenizer tokenizer = new TagTokenizer(html);
+
+		int type;
+		while ((type = tokenizer.next()) != TagTokenizer.END) {
+			String typeName = type == TagTokenizer.OPENING_TAG ? "open" : type == TagTokenizer.CLOSING_TAG ? "close" : "empty";
+
+			tags.add(typeName + " " + html.substring(tokenizer.getNameStart(), tokenizer.getNameEnd()) + " ["
+					+ html.substring(tokenizer.getFullNameStart(type), tokenizer.getFullNameEnd(type)) + "] " + tokenizer.getTagStart() + "-" + tokenizer.getTagEnd());
+		}
+
+		return tags;
+	}
+
+}
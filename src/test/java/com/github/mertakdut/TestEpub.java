@@ -0,0 +1,72 @@
+package com.github.mertakdut;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Writes minimal epub files for the tests; a chapter per given html body, each listed in the ncx.
+class TestEpub {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	static File create(String... htmlBodies) throws IOException {
+
+		File file = File.createTempFile("test", Constants.EXTENSION_EPUB);
+		file.deleteOnExit();
+
+		StringBuilder manifest = new StringBuilder("<item id=\"ncx\" href=\"toc.ncx\" media-type=\"application/x-dtbncx+xml\"/>");
+		StringBuilder spine = new StringBuilder();
+		StringBuilder navMap = new StringBuilder();
+
+		ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(file));
+
+		try {
+			putEntry(outputStream, "mimetype", "application/epub+zip");
+			putEntry(outputStream, Constants.FILE_PATH_CONTAINER_XML, "<?xml version=\"1.0\"?><container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\">"
+					+ "<rootfiles><rootfile full-path=\"OEBPS/content.opf\" media-type=\"application/oebps-package+xml\"/></rootfiles></container>");
+
+			for (int i = 0; i < htmlBodies.length; i++) {
+				String href = "chapter" + i + ".xhtml";
+
+				putEntry(outputStream, "OEBPS/" + href, "<?xml version=\"1.0\" encoding=\"UTF-8\"?><html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Chapter " + i
+						+ "</title></head><body>" + htmlBodies[i] + "</body></html>");
+
+				manifest.append("<item id=\"chapter" + i + "\" href=\"" + href + "\" media-type=\"application/xhtml+xml\"/>");
+				spine.append("<itemref idref=\"chapter" + i + "\"/>");
+				navMap.append("<navPoint id=\"navPoint-" + i + "\" playOrder=\"" + (i + 1) + "\"><navLabel><text>Chapter " + i + "</text></navLabel><content src=\"" + href
+						+ "\"/></navPoint>");
+			}
+
+			putEntry(outputStream, "OEBPS/content.opf", "<?xml version=\"1.0\"?><package xmlns=\"http://www.idpf.org/2007/opf\" version=\"2.0\"><metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+					+ "<dc:title>Test</dc:title><dc:identifier>test</dc:identifier></metadata><manifest>" + manifest + "</manifest><spine toc=\"ncx\">" + spine + "</spine></package>");
+			putEntry(outputStream, "OEBPS/toc.ncx", "<?xml version=\"1.0\"?><ncx xmlns=\"http://www.daisy.org/z3986/2005/ncx/\" version=\"2005-1\"><head><meta name=\"dtb:uid\" content=\"test\"/></head>"
+					+ "<docTitle><text>Test</text></docTitle><navMap>" + navMap + "</navMap></ncx>");
+		} finally {
+			outputStream.close();
+		}
+
+		return file;
+	}
+
+	// Paragraphs of plain text, about the given length in chars.
+	static String createParagraphs(int length) {
+
+		StringBuilder htmlBody = new StringBuilder(length + 64);
+
+		for (int i = 0; htmlBody.length() < length; i++) {
+			htmlBody.append("<p>Paragraph ").append(i).append(" of the chapter, with <em>some</em> text in it.</p>");
+		}
+
+		return htmlBody.toString();
+	}
+
+	private static void putEntry(ZipOutputStream outputStream, String name, String content) throws IOException {
+		outputStream.putNextEntry(new ZipEntry(name));
+		outputStream.write(content.getBytes(UTF_8));
+		outputStream.closeEntry();
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.github.mertakdut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TocTest {
+
+	@Test
+	public void skipsDuplicateContentSrcs() {
+		Toc.NavMap navMap = new Toc().getNavMap();
+
+		navMap.addNavPoint(createNavPoint("a.xhtml", "A"));
+		navMap.addNavPoint(createNavPoint("b.xhtml", "B"));
+		navMap.addNavPoint(createNavPoint("a.xhtml", "A again"));
+		navMap.addNavPoint(createNavPoint("a.xhtml#part", "A part"));
+
+		assertEquals(Arrays.asList("A", "B", "A part"), getNavLabels(navMap));
+	}
+
+	@Test
+	public void skipsNavPointsWithoutContentSrc() {
+		Toc.NavMap navMap = new Toc().getNavMap();
+
+		navMap.addNavPoint(createNavPoint(null, "No src first")); // Used to be kept while the list was empty.
+		navMap.addNavPoint(createNavPoint("a.xhtml", "A"));
+		navMap.addNavPoint(createNavPoint(null, "No src"));
+
+		assertEquals(Arrays.asList("A"), getNavLabels(navMap));
+	}
+
+	@Test
+	public void skipsDuplicatesOfReplacedNavPoints() {
+		Toc.NavMap navMap = new Toc().getNavMap();
+
+		navMap.addNavPoint(createNavPoint("a.xhtml", "A"));
+		navMap.setNavPoints(new ArrayList<>(Arrays.asList(createNavPoint("b.xhtml", "B"))));
+		navMap.addNavPoint(createNavPoint("a.xhtml", "A"));
+		navMap.addNavPoint(createNavPoint("b.xhtml", "B again"));
+
+		assertEquals(Arrays.asList("B", "A"), getNavLabels(navMap));
+	}
+
+	@Test
+	public void addsNavPointsInLinearTime() {
+		addNavPoints(5000); // Warm up.
+
+		long smallTime = Math.max(getFastestAddTime(5000), 1000000); // At least 1ms; timer resolution shouldn't make the ratio explode.
+		long largeTime = getFastestAddTime(50000);
+
+		// 10 times the nav points; a quadratic scan takes about 100 times longer.
+		assertTrue("5000 nav points in " + smallTime + "ns, 50000 in " + largeTime + "ns", largeTime < smallTime * 30);
+	}
+
+	private long getFastestAddTime(int count) {
+		long fastestTime = Long.MAX_VALUE;
+
+		for (int i = 0; i < 3; i++) {
+			long startTime = System.nanoTime();
+			addNavPoints(count);
+			fastestTime = Math.min(fastestTime, System.nanoTime() - startTime);
+		}
+
+		return fastestTime;
+	}
+
+	private void addNavPoints(int count) {
+		Toc.NavMap navMap = new Toc().getNavMap();
+
+		for (int i = 0; i < count; i++) {
+			navMap.addNavPoint(createNavPoint("chapter" + i + ".xhtml", null));
+		}
+
+		assertEquals(count, navMap.getNavPoints().size());
+	}
+
+	private NavPoint createNavPoint(String contentSrc, String navLabel) {
+		NavPoint navPoint = new NavPoint();
+		navPoint.setContentSrc(contentSrc);
+		navPoint.setNavLabel(navLabel);
+
+		return navPoint;
+	}
+
+	private List<String> getNavLabels(Toc.NavMap navMap) {
+		List<String> navLabels = new ArrayList<>();
+
+		for (NavPoint navPoint : navMap.getNavPoints()) {
+			navLabels.add(navPoint.getNavLabel());
+		}
+
+		return navLabels;
+	}
+
+}